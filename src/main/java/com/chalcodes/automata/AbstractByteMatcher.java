@@ -1,9 +1,16 @@
 package com.chalcodes.automata;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
 import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.BitSet;
+import java.util.Deque;
 
 /**
  * Abstract superclass of byte matchers.
@@ -13,23 +20,90 @@ import java.util.BitSet;
 abstract class AbstractByteMatcher implements ByteMatcher {
 	private static final int INITIAL = 0;
 	private static final int NO_MATCH = -1;
-	static final int NO_TRANSITION = -1;
-	private final int[][] mTransitions;
+	static final int NO_TRANSITION = ByteTable.NO_TRANSITION;
+	static final int NEED_INPUT = -1;
+	static final int THROUGH_LIMIT = Integer.MAX_VALUE;
+	private static final long LOW_SEVEN_BITS = 0x7F7F7F7F7F7F7F7FL;
+	private final ByteTable mTransitions;
 	private final BitSet mAccepting;
+	/** States from which no accepting state can be reached in one or more
+	 * steps, so no longer match is possible. */
+	private final BitSet mHopeless;
+	private final boolean mBackward;
+	@Nullable private BuildReport mBuildReport;
+	@Nullable private MatchCounters mCounters;
+	@Nonnull private MatchMode mMode = MatchMode.LONGEST;
 
-	AbstractByteMatcher(@Nonnull final int[][] states, @Nonnull final BitSet accepting) {
+	AbstractByteMatcher(@Nonnull final ByteTable states,
+						@Nonnull final BitSet accepting,
+						final boolean backward) {
 		mTransitions = states;
 		mAccepting = accepting;
+		mHopeless = getHopeless(states, accepting);
+		mBackward = backward;
 	}
 
 	AbstractByteMatcher(@Nonnull final AbstractByteMatcher other) {
 		mTransitions = other.mTransitions;
 		mAccepting = other.mAccepting;
+		mHopeless = other.mHopeless;
+		mBackward = other.mBackward;
+		mBuildReport = other.mBuildReport;
+		mCounters = other.mCounters;
+		mMode = other.mMode;
+	}
+
+	/**
+	 * Finds the states that have no path of one or more steps to an
+	 * accepting state, working backward from the accepting states.
+	 */
+	private static BitSet getHopeless(@Nonnull final ByteTable table, @Nonnull final BitSet accepting) {
+		final int states = table.stateCount();
+		final int[][] sources = new int[states][];
+		final int[] sourceCounts = new int[states];
+		final int[] inputs = new int[256];
+		final int[] targets = new int[256];
+		for(int state = 0; state < states; ++state) {
+			final int count = table.getRow(state, inputs, targets);
+			for(int i = 0; i < count; ++i) {
+				final int target = targets[i];
+				int[] list = sources[target];
+				if(list == null) {
+					list = new int[4];
+					sources[target] = list;
+				}
+				else if(sourceCounts[target] == list.length) {
+					list = Arrays.copyOf(list, list.length * 2);
+					sources[target] = list;
+				}
+				list[sourceCounts[target]++] = state;
+			}
+		}
+		final BitSet hopeful = new BitSet(states);
+		final Deque<Integer> stack = new ArrayDeque<>();
+		for(int state = accepting.nextSetBit(0); state >= 0; state = accepting.nextSetBit(state + 1)) {
+			stack.push(state);
+		}
+		while(!stack.isEmpty()) {
+			final int state = stack.pop();
+			for(int i = 0; i < sourceCounts[state]; ++i) {
+				final int source = sources[state][i];
+				if(!hopeful.get(source)) {
+					hopeful.set(source);
+					stack.push(source);
+				}
+			}
+		}
+		hopeful.flip(0, states);
+		return hopeful;
 	}
 
 	private int mState = INITIAL;
 	private int mMatch = NO_MATCH;
 	private int mLength;
+	private int mExamined;
+	/** True if the last scan stopped at a byte with no transition. */
+	private boolean mRejected;
 
 	@Override
 	public void reset() {
@@ -38,7 +112,93 @@ abstract class AbstractByteMatcher implements ByteMatcher {
 	}
 
 	/**
-	 * Gets the length of the longest match.
+	 * Tests whether this matcher scans backward from the limit of the buffer
+	 * instead of forward from its position.
+	 *
+	 * @return true if this matcher scans backward; otherwise false
+	 */
+	public boolean isBackward() {
+		return mBackward;
+	}
+
+	/**
+	 * Gets the report of the compilation of this matcher.
+	 *
+	 * @return the build report, or null if this matcher was not built by
+	 * {@link ByteMatchers}
+	 */
+	@Nullable public BuildReport getBuildReport() {
+		return mBuildReport;
+	}
+
+	void setBuildReport(@Nonnull final BuildReport buildReport) {
+		mBuildReport = buildReport;
+	}
+
+	/**
+	 * Attaches counters to this matcher.  Copies made afterward share the
+	 * counters.  Counting is off by default.
+	 *
+	 * @param counters the counters, or null to stop counting
+	 */
+	public void setCounters(@Nullable final MatchCounters counters) {
+		mCounters = counters;
+	}
+
+	@Nullable public MatchCounters getCounters() {
+		return mCounters;
+	}
+
+	/**
+	 * Selects which match this matcher reports.  Copies made afterward use
+	 * the same mode.  The default is {@link MatchMode#LONGEST}.
+	 *
+	 * @param mode the match mode
+	 */
+	public void setMatchMode(@Nonnull final MatchMode mode) {
+		mMode = mode;
+	}
+
+	@Nonnull public MatchMode getMatchMode() {
+		return mMode;
+	}
+
+	int stateCount() {
+		return mTransitions.stateCount();
+	}
+
+	ByteTable transitions() {
+		return mTransitions;
+	}
+
+	BitSet accepting() {
+		return mAccepting;
+	}
+
+	BitSet hopeless() {
+		return mHopeless;
+	}
+
+	/**
+	 * Creates an empty profile of the states of this matcher.
+	 *
+	 * @return the profile
+	 */
+	public StateProfile newProfile() {
+		return new StateProfile(mTransitions, mBackward);
+	}
+
+	/**
+	 * Estimates the heap size of the transition table and accepting state
+	 * set, assuming 16-byte array headers and 4-byte references.
+	 */
+	long tableBytes() {
+		return mTransitions.bytes() + 16 + mAccepting.size() / 8;
+	}
+
+	/**
+	 * Gets the length of the longest match.  If this matcher scans backward,
+	 * the match ends at the limit of the buffer.
 	 *
 	 * @return the length of the longest match
 	 * @throws IllegalStateException if there is no match
@@ -66,29 +226,281 @@ abstract class AbstractByteMatcher implements ByteMatcher {
 
 	@Override
 	public boolean matches(@Nonnull final ByteBuffer buffer) {
+		final int remaining = buffer.remaining();
+		/* A backward matcher reads from the limit toward the position. */
+		final int consumed = run(buffer, mBackward ? buffer.limit() - 1 : buffer.position(), remaining, mMode);
+		if(mMode == MatchMode.FULL && mMatch != NO_MATCH && mLength != remaining) {
+			mMatch = NO_MATCH;
+		}
+		if(mCounters != null) {
+			/* The byte that had no transition was examined too. */
+			mCounters.record(mRejected ? consumed + 1 : consumed, mMatch != NO_MATCH);
+		}
+		/* More input could change the result unless the scan stopped for
+		 * some other reason than running out of input. */
+		if(consumed == remaining && mMode != MatchMode.FULL && !mHopeless.get(mState) &&
+				(mMode == MatchMode.LONGEST || mMatch == NO_MATCH)) {
+			throw new BufferUnderflowException();
+		}
+		return mMatch != NO_MATCH;
+	}
+
+	/**
+	 * Creates an empty tally of the matches of this matcher.
+	 *
+	 * @return the tally
+	 */
+	public MatchTally newTally() {
+		return new MatchTally(mTransitions);
+	}
+
+	/**
+	 * Counts the matches in a buffer without reporting them.  The buffer is
+	 * split into a sequence of longest matches, as a lexer would split it,
+	 * and the accepting state of each match is counted.  A byte at which no
+	 * match of at least one byte begins is counted as unmatched and skipped.
+	 * The buffer is taken to be the end of the input.  Its position is not
+	 * changed.
+	 * <p>
+	 * Nothing is allocated per match.  To count on several threads, give
+	 * each thread a {@link #copy() copy} of this matcher and its own tally,
+	 * then {@link MatchTally#merge(MatchTally) merge} the tallies.
+	 *
+	 * @param buffer the input
+	 * @param tally the tally
+	 * @throws IllegalArgumentException if the tally is not of this matcher
+	 * @throws IllegalStateException if this matcher scans backward
+	 */
+	public void tally(@Nonnull final ByteBuffer buffer, @Nonnull final MatchTally tally) {
+		checkTally(tally);
+		tally(buffer, buffer.position(), tally, true);
+	}
+
+	/**
+	 * Counts the matches in the rest of a channel.  Matches may span reads.
+	 * A match that would not fit in the buffer is cut off where the buffer
+	 * is full.
+	 *
+	 * @param channel the input
+	 * @param buffer the buffer to read into
+	 * @param tally the tally
+	 * @throws IOException if the channel cannot be read
+	 * @throws IllegalArgumentException if the tally is not of this matcher
+	 * @throws IllegalStateException if this matcher scans backward
+	 * @see #tally(ByteBuffer, MatchTally)
+	 */
+	public void tally(@Nonnull final ReadableByteChannel channel,
+					  @Nonnull final ByteBuffer buffer,
+					  @Nonnull final MatchTally tally) throws IOException {
+		checkTally(tally);
+		buffer.clear();
+		boolean eof = false;
+		while(!eof || buffer.position() > 0) {
+			if(!eof) {
+				eof = channel.read(buffer) < 0;
+			}
+			buffer.flip();
+			buffer.position(tally(buffer, buffer.position(), tally, eof));
+			buffer.compact();
+		}
+	}
+
+	private void checkTally(@Nonnull final MatchTally tally) {
+		if(mBackward) {
+			throw new IllegalStateException("backward matcher");
+		}
+		if(!tally.isFor(mTransitions)) {
+			throw new IllegalArgumentException("tally is not of this matcher");
+		}
+	}
+
+	/**
+	 * Counts matches from a position up to the limit of a buffer.
+	 *
+	 * @return the position of the first byte not examined, which begins a
+	 * match that may continue past the limit unless {@code eof} is true
+	 */
+	private int tally(@Nonnull final ByteBuffer buffer,
+					  int position,
+					  @Nonnull final MatchTally tally,
+					  final boolean eof) {
+		final int start = buffer.position();
+		final int limit = buffer.limit();
+		while(position < limit) {
+			/* Wait for more input unless the buffer is already full. */
+			final int length = longestMatchAt(buffer, position,
+					eof || (position == start && limit == buffer.capacity()));
+			if(length == NEED_INPUT) {
+				return position;
+			}
+			if(length > 0) {
+				tally.count(mMatch);
+				position += length;
+			}
+			else {
+				tally.skip();
+				++position;
+			}
+		}
+		return position;
+	}
+
+	/**
+	 * Finds the longest match that begins at an index, for scanners that
+	 * split a stream into matches.  The state of the match can be read with
+	 * {@link #matchState()}.
+	 *
+	 * @param buffer the input
+	 * @param position the index at which the match begins
+	 * @param eof true if no input follows the limit of the buffer
+	 * @return the length of the match, 0 if there is none, or
+	 * {@link #NEED_INPUT} if input after the limit could change the result
+	 */
+	int longestMatchAt(@Nonnull final ByteBuffer buffer, final int position, final boolean eof) {
+		final int remaining = buffer.limit() - position;
+		final int consumed = run(buffer, position, remaining, MatchMode.LONGEST);
+		/* The scan stops before reading the next byte in a hopeless state,
+		 * and after reading it when there is no transition. */
+		if(mRejected) {
+			mExamined = consumed + 1;
+		}
+		else {
+			mExamined = consumed == remaining && !mHopeless.get(mState) ? THROUGH_LIMIT : consumed;
+		}
+		if(!eof && consumed == remaining && !mHopeless.get(mState)) {
+			return NEED_INPUT;
+		}
+		return mMatch == NO_MATCH ? 0 : mLength;
+	}
+
+	/**
+	 * Gets the number of bytes examined by the last call to
+	 * {@link #longestMatchAt(ByteBuffer, int, boolean)}.  A match depends
+	 * on no other input.
+	 *
+	 * @return the number of bytes examined, or {@link #THROUGH_LIMIT} if the
+	 * scan reached the limit of the buffer
+	 */
+	int examined() {
+		return mExamined;
+	}
+
+	/**
+	 * Matches a complete message from an index up to the limit of a buffer
+	 * in the current match mode, for callers that match many messages
+	 * without the overhead of {@link #matches(ByteBuffer)}.  Counters are not
+	 * updated.  The state of the match can be read with {@link #matchState()}.
+	 *
+	 * @param buffer the input
+	 * @param position the index at which the message begins
+	 * @return the length of the match, or -1 if there is none
+	 */
+	int matchMessage(@Nonnull final ByteBuffer buffer, final int position) {
+		final int remaining = buffer.limit() - position;
+		run(buffer, mBackward ? buffer.limit() - 1 : position, remaining, mMode);
+		if(mMode == MatchMode.FULL && mMatch != NO_MATCH && mLength != remaining) {
+			mMatch = NO_MATCH;
+		}
+		return mMatch == NO_MATCH ? NO_MATCH : mLength;
+	}
+
+	/**
+	 * Runs this matcher over a buffer, recording the longest match.
+	 *
+	 * @param buffer the input
+	 * @param start the index of the first byte to read
+	 * @param remaining the number of bytes that may be read
+	 * @param mode the match mode
+	 * @return the number of bytes consumed
+	 */
+	private int run(@Nonnull final ByteBuffer buffer,
+					final int start,
+					final int remaining,
+					@Nonnull final MatchMode mode) {
 		reset();
+		mRejected = false;
 		int consumed = 0;
 		checkMatch(consumed);
-		final int pos = buffer.position();
-		final int remaining = buffer.remaining();
+		final int direction = mBackward ? -1 : 1;
 		while(consumed < remaining) {
-			final int input = buffer.get(pos + consumed) & 0xFF;
+			if(isDone(mode)) {
+				break;
+			}
+			if(!mBackward) {
+				final long[] exits = mTransitions.getAcceleration(mState);
+				if(exits != null) {
+					/* The state is unchanged by the bytes skipped, so only
+					 * the length of a match can change. */
+					consumed = skip(buffer, start, consumed, remaining, exits);
+					checkMatch(consumed);
+					if(consumed == remaining) {
+						break;
+					}
+				}
+			}
+			final int input = buffer.get(start + direction * consumed) & 0xFF;
 			if(step(input)) {
 				++consumed;
 				checkMatch(consumed);
 			}
 			else {
+				mRejected = true;
 				break;
 			}
 		}
-		if(consumed == remaining && hasTransitions()) {
-			throw new BufferUnderflowException();
+		return consumed;
+	}
+
+	/**
+	 * Finds the next exit byte of an accelerated state, eight bytes at a
+	 * time.  Each word of input is compared with every exit pattern, and the
+	 * zero bytes of the differences are found exactly, without the carries
+	 * between bytes that can cause false positives in the usual test.
+	 *
+	 * @return the number of bytes consumed before the exit byte, or
+	 * {@code remaining} if there is none
+	 */
+	private static int skip(@Nonnull final ByteBuffer buffer,
+							final int start,
+							int consumed,
+							final int remaining,
+							@Nonnull final long[] exits) {
+		final boolean bigEndian = buffer.order() == ByteOrder.BIG_ENDIAN;
+		while(remaining - consumed >= 8) {
+			final long word = buffer.getLong(start + consumed);
+			long found = 0;
+			for(final long exit : exits) {
+				final long x = word ^ exit;
+				found |= ~(((x & LOW_SEVEN_BITS) + LOW_SEVEN_BITS) | x | LOW_SEVEN_BITS);
+			}
+			if(found != 0) {
+				return consumed + ((bigEndian ? Long.numberOfLeadingZeros(found) : Long.numberOfTrailingZeros(found)) >>> 3);
+			}
+			consumed += 8;
 		}
-		return mMatch != NO_MATCH;
+		while(consumed < remaining) {
+			final byte b = buffer.get(start + consumed);
+			for(final long exit : exits) {
+				if(b == (byte) exit) {
+					return consumed;
+				}
+			}
+			++consumed;
+		}
+		return consumed;
+	}
+
+	/**
+	 * Tests whether the scan can stop before reading more input.
+	 */
+	private boolean isDone(@Nonnull final MatchMode mode) {
+		/* A full match also fails in a hopeless state, since some input
+		 * remains. */
+		return mode == MatchMode.SHORTEST ? mMatch != NO_MATCH : mHopeless.get(mState);
 	}
 
 	private boolean step(int input) {
-		final int transition = mTransitions[mState][input];
+		final int transition = mTransitions.next(mState, input);
 		if(transition == NO_TRANSITION) {
 			return false;
 		}
@@ -105,13 +517,5 @@ abstract class AbstractByteMatcher implements ByteMatcher {
 		}
 	}
 
-	private boolean hasTransitions() {
-		for(final int t : mTransitions[mState]) {
-			if(t != NO_TRANSITION) {
-				return true;
-			}
-		}
-		return false;
-	}
 
 }
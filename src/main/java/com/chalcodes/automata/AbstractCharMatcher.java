@@ -0,0 +1,96 @@
+package com.chalcodes.automata;
+
+import javax.annotation.Nonnull;
+import java.util.BitSet;
+
+/**
+ * Abstract superclass of char matchers.  The transition table has one row of
+ * character classes per state.
+ *
+ * @author Kevin Krumwiede
+ */
+abstract class AbstractCharMatcher implements CharMatcher {
+	private static final int INITIAL = 0;
+	private static final int NO_MATCH = -1;
+	static final int NO_TRANSITION = -1;
+	private final CharClasses mClasses;
+	private final int[] mTransitions;
+	private final BitSet mAccepting;
+
+	AbstractCharMatcher(@Nonnull final CharClasses classes,
+						@Nonnull final int[] transitions,
+						@Nonnull final BitSet accepting) {
+		mClasses = classes;
+		mTransitions = transitions;
+		mAccepting = accepting;
+	}
+
+	AbstractCharMatcher(@Nonnull final AbstractCharMatcher other) {
+		mClasses = other.mClasses;
+		mTransitions = other.mTransitions;
+		mAccepting = other.mAccepting;
+	}
+
+	private int mState = INITIAL;
+	private int mMatch = NO_MATCH;
+	private int mLength;
+
+	@Override
+	public void reset() {
+		mState = INITIAL;
+		mMatch = NO_MATCH;
+	}
+
+	/**
+	 * Gets the length of the longest match.
+	 *
+	 * @return the length of the longest match
+	 * @throws IllegalStateException if there is no match
+	 */
+	@Override
+	public int length() {
+		if(mMatch == NO_MATCH) {
+			throw new IllegalStateException("no match");
+		}
+		return mLength;
+	}
+
+	/**
+	 * Gets the state number of the longest match.
+	 *
+	 * @return the state number of the longest match
+	 * @throws IllegalStateException if there is no match
+	 */
+	int matchState() {
+		if(mMatch == NO_MATCH) {
+			throw new IllegalStateException("no match");
+		}
+		return mMatch;
+	}
+
+	@Override
+	public boolean matches(@Nonnull final CharSequence input, final int start) {
+		reset();
+		int consumed = 0;
+		checkMatch(consumed);
+		final int remaining = input.length() - start;
+		final int stride = mClasses.count();
+		while(consumed < remaining) {
+			final int transition = mTransitions[mState * stride + mClasses.classOf(input.charAt(start + consumed))];
+			if(transition == NO_TRANSITION) {
+				break;
+			}
+			mState = transition;
+			++consumed;
+			checkMatch(consumed);
+		}
+		return mMatch != NO_MATCH;
+	}
+
+	private void checkMatch(final int len) {
+		if(mAccepting.get(mState)) {
+			mMatch = mState;
+			mLength = len;
+		}
+	}
+}
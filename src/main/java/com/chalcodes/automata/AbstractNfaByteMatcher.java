@@ -0,0 +1,121 @@
+package com.chalcodes.automata;
+
+import javax.annotation.Nonnull;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Abstract superclass of byte matchers that simulate a non-deterministic
+ * automaton with bit-parallel sets of positions.  No subset construction is
+ * performed, so compilation is fast and memory stays bounded, at the cost of
+ * a per-byte step proportional to the number of active positions.
+ *
+ * @author Kevin Krumwiede
+ * @see BitParallelNfa
+ */
+abstract class AbstractNfaByteMatcher<T> implements ByteMatcher {
+	final BitParallelNfa<T> mNfa;
+	private long[] mCurrent;
+	private long[] mNext;
+	/** The accepting positions that were active at the longest match. */
+	final long[] mMatch;
+	private boolean mMatched;
+	private int mLength;
+
+	AbstractNfaByteMatcher(@Nonnull final BitParallelNfa<T> nfa) {
+		mNfa = nfa;
+		mCurrent = new long[nfa.mWords];
+		mNext = new long[nfa.mWords];
+		mMatch = new long[nfa.mWords];
+	}
+
+	@Override
+	public void reset() {
+		mMatched = false;
+	}
+
+	/**
+	 * Gets the length of the longest match.
+	 *
+	 * @return the length of the longest match
+	 * @throws IllegalStateException if there is no match
+	 */
+	@Override
+	public int length() {
+		checkMatched();
+		return mLength;
+	}
+
+	void checkMatched() {
+		if(!mMatched) {
+			throw new IllegalStateException("no match");
+		}
+	}
+
+	@Override
+	public boolean matches(@Nonnull final ByteBuffer buffer) {
+		reset();
+		System.arraycopy(mNfa.mInitial, 0, mCurrent, 0, mNfa.mWords);
+		int consumed = 0;
+		checkMatch(consumed);
+		final int pos = buffer.position();
+		final int remaining = buffer.remaining();
+		while(consumed < remaining) {
+			final int input = buffer.get(pos + consumed) & 0xFF;
+			if(step(input)) {
+				++consumed;
+				checkMatch(consumed);
+			}
+			else {
+				break;
+			}
+		}
+		if(consumed == remaining && BitParallelNfa.intersects(mCurrent, mNfa.mExits)) {
+			throw new BufferUnderflowException();
+		}
+		return mMatched;
+	}
+
+	private boolean step(final int input) {
+		final long[] next = mNext;
+		final long[] current = mCurrent;
+		final long[][] follow = mNfa.mFollow;
+		final int words = next.length;
+		for(int i = 0; i < words; ++i) {
+			next[i] = 0;
+		}
+		for(int i = 0; i < words; ++i) {
+			long word = current[i];
+			while(word != 0) {
+				final long[] positions = follow[(i << 6) + Long.numberOfTrailingZeros(word)];
+				for(int j = 0; j < words; ++j) {
+					next[j] |= positions[j];
+				}
+				word &= word - 1;
+			}
+		}
+		final long[] mask = mNfa.mMasks[input];
+		long any = 0;
+		for(int i = 0; i < words; ++i) {
+			next[i] &= mask[i];
+			any |= next[i];
+		}
+		if(any == 0) {
+			return false;
+		}
+		mNext = current;
+		mCurrent = next;
+		return true;
+	}
+
+	private void checkMatch(final int len) {
+		final long[] accepting = mNfa.mAccepting;
+		if(BitParallelNfa.intersects(mCurrent, accepting)) {
+			for(int i = 0; i < mMatch.length; ++i) {
+				mMatch[i] = mCurrent[i] & accepting[i];
+			}
+			mMatched = true;
+			mLength = len;
+		}
+	}
+}
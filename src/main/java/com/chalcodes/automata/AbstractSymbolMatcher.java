@@ -0,0 +1,143 @@
+package com.chalcodes.automata;
+
+import javax.annotation.Nonnull;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Abstract superclass of symbol matchers.  The transition table is a single
+ * array with one row of symbol IDs per state.
+ *
+ * @author Kevin Krumwiede
+ */
+abstract class AbstractSymbolMatcher<S> implements SymbolMatcher<S> {
+	private static final int INITIAL = 0;
+	private static final int NO_MATCH = -1;
+	static final int NO_TRANSITION = -1;
+	private final SymbolIndex<S> mIndex;
+	private final int[] mTransitions;
+	private final int mStride;
+	private final BitSet mAccepting;
+
+	AbstractSymbolMatcher(@Nonnull final SymbolIndex<S> index,
+						  @Nonnull final int[] transitions,
+						  final int stride,
+						  @Nonnull final BitSet accepting) {
+		mIndex = index;
+		mTransitions = transitions;
+		mStride = stride;
+		mAccepting = accepting;
+	}
+
+	AbstractSymbolMatcher(@Nonnull final AbstractSymbolMatcher<S> other) {
+		mIndex = other.mIndex;
+		mTransitions = other.mTransitions;
+		mStride = other.mStride;
+		mAccepting = other.mAccepting;
+	}
+
+	private int mState = INITIAL;
+	private int mMatch = NO_MATCH;
+	private int mLength;
+
+	@Override
+	public void reset() {
+		mState = INITIAL;
+		mMatch = NO_MATCH;
+	}
+
+	/**
+	 * Gets the length of the longest match.
+	 *
+	 * @return the length of the longest match
+	 * @throws IllegalStateException if there is no match
+	 */
+	@Override
+	public int length() {
+		if(mMatch == NO_MATCH) {
+			throw new IllegalStateException("no match");
+		}
+		return mLength;
+	}
+
+	/**
+	 * Gets the state number of the longest match.
+	 *
+	 * @return the state number of the longest match
+	 * @throws IllegalStateException if there is no match
+	 */
+	int matchState() {
+		if(mMatch == NO_MATCH) {
+			throw new IllegalStateException("no match");
+		}
+		return mMatch;
+	}
+
+	@Override
+	public int symbolId(@Nonnull final S symbol) {
+		return mIndex.indexOf(symbol);
+	}
+
+	@Override
+	public boolean matches(@Nonnull final List<S> symbols, final int start) {
+		if(!(symbols instanceof RandomAccess)) {
+			return matches(symbols.listIterator(start));
+		}
+		reset();
+		int consumed = 0;
+		checkMatch(consumed);
+		final int remaining = symbols.size() - start;
+		while(consumed < remaining && step(mIndex.indexOf(symbols.get(start + consumed)))) {
+			++consumed;
+			checkMatch(consumed);
+		}
+		return mMatch != NO_MATCH;
+	}
+
+	@Override
+	public boolean matches(@Nonnull final Iterator<S> symbols) {
+		reset();
+		int consumed = 0;
+		checkMatch(consumed);
+		while(symbols.hasNext() && step(mIndex.indexOf(symbols.next()))) {
+			++consumed;
+			checkMatch(consumed);
+		}
+		return mMatch != NO_MATCH;
+	}
+
+	@Override
+	public boolean matches(@Nonnull final int[] symbolIds, final int offset, final int length) {
+		reset();
+		int consumed = 0;
+		checkMatch(consumed);
+		while(consumed < length && step(symbolIds[offset + consumed])) {
+			++consumed;
+			checkMatch(consumed);
+		}
+		return mMatch != NO_MATCH;
+	}
+
+	private boolean step(final int symbolId) {
+		if(symbolId < 0 || symbolId >= mStride) {
+			return false;
+		}
+		final int transition = mTransitions[mState * mStride + symbolId];
+		if(transition == NO_TRANSITION) {
+			return false;
+		}
+		else {
+			mState = transition;
+			return true;
+		}
+	}
+
+	private void checkMatch(final int len) {
+		if(mAccepting.get(mState)) {
+			mMatch = mState;
+			mLength = len;
+		}
+	}
+}
@@ -1,9 +1,20 @@
 package com.chalcodes.automata;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
@@ -21,12 +32,21 @@ public class Automaton<S,T> {
 	private final Set<State<S,T>> mAccepting = new HashSet<>();
 	private boolean mCannibalized;
 	private boolean mDeterminized;
+	/** True if the initial state was created by a flat union and has no
+	 * incoming transitions, so its epsilons can be merged into another flat
+	 * union. */
+	private boolean mFlatUnion;
 
 	Automaton(@Nonnull final State<S, T> initial) {
 		mInitial = initial;
 		findAccepting();
 	}
 
+	Automaton(@Nonnull final State<S, T> initial, final boolean determinized) {
+		this(initial);
+		mDeterminized = determinized;
+	}
+
 	private void findAccepting() {
 		mAccepting.clear();
 		for(final State<S,T> state : mInitial.findReachable()) {
@@ -56,6 +76,7 @@ public class Automaton<S,T> {
 		final Map<State<S,T>, State<S,T>> map = mInitial.copy();
 		final Automaton<S,T> copy = new Automaton<>(map.get(mInitial));
 		copy.mDeterminized = mDeterminized;
+		copy.mFlatUnion = mFlatUnion;
 		return copy;
 	}
 
@@ -81,6 +102,7 @@ public class Automaton<S,T> {
 		for(final State<S,T> state : mAccepting) {
 			state.addEpsilon(mInitial);
 		}
+		mFlatUnion = false;
 		mDeterminized = false;
 		return this;
 	}
@@ -96,6 +118,7 @@ public class Automaton<S,T> {
 			accept.addEpsilon(mInitial);
 			mInitial.addEpsilon(accept);
 		}
+		mFlatUnion = false;
 		mDeterminized = false;
 		return this;
 	}
@@ -145,11 +168,346 @@ public class Automaton<S,T> {
 		initial.addEpsilon(mInitial);
 		initial.addEpsilon(other.mInitial);
 		mInitial = initial;
+		mFlatUnion = false;
 		mAccepting.addAll(other.mAccepting);
 		mDeterminized = false;
 		return this;
 	}
 
+	/**
+	 * Creates an automaton that accepts the union of the languages of the
+	 * members, which will be cannibalized.  The new initial state has an
+	 * epsilon transition to the initial state of each member.  If a member
+	 * is itself a flat union that has not been modified since, its initial
+	 * state's transitions are merged into the new one instead, so unions of
+	 * unions stay one level deep.
+	 */
+	static <S,T> Automaton<S,T> unionAll(@Nonnull final Collection<Automaton<S,T>> members) {
+		final State<S,T> initial = new State<>();
+		for(final Automaton<S,T> member : members) {
+			member.cannibalize();
+			if(member.mFlatUnion) {
+				initial.addEpsilons(member.mInitial.getEpsilons());
+			}
+			else {
+				initial.addEpsilon(member.mInitial);
+			}
+		}
+		final Automaton<S,T> union = new Automaton<>(initial);
+		union.mFlatUnion = true;
+		return union;
+	}
+
+	/**
+	 * Marks the language of this automaton as a capture group.  A tagged
+	 * matcher reports the offsets at which the group was entered and left.
+	 * The language is not changed, and matchers that do not capture ignore
+	 * the group.  If the group is repeated, the last repetition is reported.
+	 * <p>
+	 * Groups are lost when an automaton is determinized, so a capturing
+	 * matcher must be built from the nondeterministic automaton.
+	 *
+	 * @param group the group number, starting with 1
+	 * @return this automaton
+	 * @see ByteMatchers#capturing(Automaton)
+	 */
+	public Automaton<S,T> capture(final int group) {
+		checkCannibalized();
+		if(group < 1) {
+			throw new IllegalArgumentException("group < 1");
+		}
+		/* The tagged states are wrapped in untagged initial and accepting
+		 * states, so the epsilons added by quantifiers skip the group
+		 * without touching its tags. */
+		final State<S,T> initial = new State<>();
+		final State<S,T> open = new State<>();
+		open.setTag(2 * (group - 1));
+		initial.addEpsilon(open);
+		open.addEpsilon(mInitial);
+		/* Accepting states with different semantic values get separate
+		 * closing states so the values stay distinct. */
+		final Map<Set<T>, State<S,T>> closes = new HashMap<>();
+		final Set<State<S,T>> accepting = new HashSet<>();
+		for(final State<S,T> state : mAccepting) {
+			final Set<T> semanticValues = state.getSemanticValues();
+			State<S,T> close = closes.get(semanticValues);
+			if(close == null) {
+				close = new State<>();
+				close.setTag(2 * (group - 1) + 1);
+				final State<S,T> accept = new State<>();
+				accept.setAccepting(true);
+				for(final T semanticValue : semanticValues) {
+					accept.addSemanticValue(semanticValue);
+				}
+				close.addEpsilon(accept);
+				closes.put(semanticValues, close);
+				accepting.add(accept);
+			}
+			state.setAccepting(false);
+			state.addEpsilon(close);
+		}
+		mInitial = initial;
+		mFlatUnion = false;
+		mAccepting.clear();
+		mAccepting.addAll(accepting);
+		mDeterminized = false;
+		return this;
+	}
+
+	/**
+	 * Modifies this automaton so it accepts the reversal of its language.
+	 * The semantic values of each original accepting state are carried to
+	 * the accepting states of the reversed paths that begin there, so a
+	 * reversed union of rules still reports which rule matched.  Accepting
+	 * states with different semantic values are reversed into separate
+	 * copies of the states that can reach them.
+	 *
+	 * @return this automaton
+	 */
+	public Automaton<S,T> reverse() {
+		checkCannibalized();
+		final Set<State<S,T>> states = mInitial.findReachable();
+		/* Group the accepting states by their semantic values. */
+		final Map<Set<T>, Set<State<S,T>>> groups = new HashMap<>();
+		for(final State<S,T> state : mAccepting) {
+			final Set<T> semanticValues = state.getSemanticValues();
+			Set<State<S,T>> group = groups.get(semanticValues);
+			if(group == null) {
+				group = new HashSet<>();
+				groups.put(semanticValues, group);
+			}
+			group.add(state);
+		}
+		final Set<S> inputs = new HashSet<>();
+		final Set<State<S,T>> targets = new HashSet<>();
+		/* Find the sources of the edges into each state. */
+		final Map<State<S,T>, Set<State<S,T>>> sources = new HashMap<>();
+		for(final State<S,T> state : states) {
+			sources.put(state, new HashSet<State<S,T>>());
+		}
+		for(final State<S,T> state : states) {
+			state.getEpsilons(targets);
+			state.getInputs(inputs);
+			for(final S input : inputs) {
+				state.getTransitions(input, targets);
+			}
+			inputs.clear();
+			for(final State<S,T> target : targets) {
+				sources.get(target).add(state);
+			}
+			targets.clear();
+		}
+		final State<S,T> initial = new State<>();
+		final Deque<State<S,T>> stack = new ArrayDeque<>();
+		for(final Map.Entry<Set<T>, Set<State<S,T>>> entry : groups.entrySet()) {
+			/* Only states that can reach an accepting state of the group are
+			 * on its reversed paths. */
+			final Map<State<S,T>, State<S,T>> reversed = new HashMap<>();
+			stack.addAll(entry.getValue());
+			while(!stack.isEmpty()) {
+				final State<S,T> state = stack.pop();
+				if(!reversed.containsKey(state)) {
+					reversed.put(state, new State<S,T>());
+					stack.addAll(sources.get(state));
+				}
+			}
+			/* Copy those states with every edge pointing the other way. */
+			for(final State<S,T> state : reversed.keySet()) {
+				final State<S,T> source = reversed.get(state);
+				state.getEpsilons(targets);
+				for(final State<S,T> target : targets) {
+					if(target != state && reversed.containsKey(target)) {
+						reversed.get(target).addEpsilon(source);
+					}
+				}
+				targets.clear();
+				state.getInputs(inputs);
+				for(final S input : inputs) {
+					state.getTransitions(input, targets);
+					for(final State<S,T> target : targets) {
+						if(reversed.containsKey(target)) {
+							reversed.get(target).addTransition(input, source);
+						}
+					}
+					targets.clear();
+				}
+				inputs.clear();
+			}
+			/* The original initial state accepts the reversed language. */
+			final State<S,T> accept = reversed.get(mInitial);
+			accept.setAccepting(true);
+			for(final T semanticValue : entry.getKey()) {
+				accept.addSemanticValue(semanticValue);
+			}
+			for(final State<S,T> state : entry.getValue()) {
+				initial.addEpsilon(reversed.get(state));
+			}
+		}
+		mInitial = initial;
+		mFlatUnion = false;
+		findAccepting();
+		mDeterminized = false;
+		return this;
+	}
+
+	/**
+	 * Modifies this automaton so it accepts the intersection of its language
+	 * with that of another automaton.  Both automatons are determinized and
+	 * the other automaton will be cannibalized.
+	 *
+	 * @param other the other automaton
+	 * @param combination selects the semantic values of accepting states
+	 * @return this automaton
+	 */
+	public Automaton<S,T> intersect(@Nonnull final Automaton<S,T> other,
+									@Nonnull final SemanticCombination combination) {
+		if(other == this) {
+			throw new IllegalArgumentException("other == this");
+		}
+		checkCannibalized();
+		other.determinize();
+		other.cannibalize();
+		determinize();
+		product(other.mInitial, true, combination);
+		return this;
+	}
+
+	/**
+	 * Modifies this automaton so it accepts its language minus that of
+	 * another automaton.  Accepting states keep the semantic values of this
+	 * automaton.  Both automatons are determinized and the other automaton
+	 * will be cannibalized.
+	 *
+	 * @param other the other automaton
+	 * @return this automaton
+	 */
+	public Automaton<S,T> minus(@Nonnull final Automaton<S,T> other) {
+		if(other == this) {
+			throw new IllegalArgumentException("other == this");
+		}
+		checkCannibalized();
+		other.determinize();
+		other.cannibalize();
+		determinize();
+		product(other.mInitial, false, SemanticCombination.LEFT);
+		return this;
+	}
+
+	/**
+	 * Modifies this automaton so it accepts every sequence of symbols from
+	 * the alphabet that it did not accept before.  Transitions on symbols
+	 * outside the alphabet are removed.  The new accepting states have no
+	 * semantic values.  This automaton will be determinized.
+	 *
+	 * @param alphabet the alphabet
+	 * @return this automaton
+	 */
+	public Automaton<S,T> complement(@Nonnull final Collection<S> alphabet) {
+		checkCannibalized();
+		determinize();
+		final Map<State<S,T>, State<S,T>> complement = new HashMap<>();
+		for(final State<S,T> state : mInitial.findReachable()) {
+			complement.put(state, new State<S,T>());
+		}
+		/* Missing transitions lead to a dead state, which now accepts. */
+		final State<S,T> dead = new State<>();
+		dead.setAccepting(true);
+		for(final S input : alphabet) {
+			dead.addTransition(input, dead);
+		}
+		for(final Map.Entry<State<S,T>, State<S,T>> entry : complement.entrySet()) {
+			final State<S,T> state = entry.getKey();
+			final State<S,T> copy = entry.getValue();
+			for(final S input : alphabet) {
+				final State<S,T> transition = state.getTransition(input);
+				copy.addTransition(input, transition == null ? dead : complement.get(transition));
+			}
+			copy.setAccepting(!state.isAccepting());
+		}
+		mInitial = complement.get(mInitial);
+		mFlatUnion = false;
+		findAccepting();
+		return this;
+	}
+
+	/**
+	 * Replaces this deterministic automaton with its product with another
+	 * deterministic automaton.  If intersecting, a product state accepts when
+	 * both of its states accept; otherwise it accepts when the left state
+	 * accepts and the right state does not.
+	 */
+	private void product(@Nonnull final State<S,T> right,
+						 final boolean intersect,
+						 @Nonnull final SemanticCombination combination) {
+		final Map<StatePair<S,T>, State<S,T>> product = new HashMap<>();
+		final Queue<StatePair<S,T>> queue = new LinkedList<>();
+		final StatePair<S,T> init = new StatePair<>(mInitial, right);
+		product.put(init, new State<S,T>());
+		queue.add(init);
+		final Set<S> inputs = new HashSet<>();
+		while(!queue.isEmpty()) {
+			final StatePair<S,T> pair = queue.remove();
+			final State<S,T> state = product.get(pair);
+			pair.mLeft.getInputs(inputs);
+			for(final S input : inputs) {
+				final State<S,T> leftTransition = pair.mLeft.getTransition(input);
+				assert leftTransition != null;
+				/* A null right state is the dead state of the right DFA. */
+				final State<S,T> rightTransition = pair.mRight == null ? null : pair.mRight.getTransition(input);
+				if(intersect && rightTransition == null) {
+					continue;
+				}
+				final StatePair<S,T> next = new StatePair<>(leftTransition, rightTransition);
+				State<S,T> transition = product.get(next);
+				if(transition == null) {
+					transition = new State<>();
+					product.put(next, transition);
+					queue.add(next);
+				}
+				state.addTransition(input, transition);
+			}
+			inputs.clear();
+			final boolean rightAccepting = pair.mRight != null && pair.mRight.isAccepting();
+			if(pair.mLeft.isAccepting() && intersect == rightAccepting) {
+				state.setAccepting(true);
+				if(combination != SemanticCombination.RIGHT) {
+					state.addSemanticValues(pair.mLeft);
+				}
+				if(combination != SemanticCombination.LEFT && pair.mRight != null) {
+					state.addSemanticValues(pair.mRight);
+				}
+			}
+		}
+		mInitial = product.get(init);
+		mFlatUnion = false;
+		findAccepting();
+		mDeterminized = true;
+	}
+
+	private static class StatePair<S,T> {
+		@Nonnull final State<S,T> mLeft;
+		@Nullable final State<S,T> mRight;
+
+		StatePair(@Nonnull final State<S,T> left, @Nullable final State<S,T> right) {
+			mLeft = left;
+			mRight = right;
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			if(!(obj instanceof StatePair)) {
+				return false;
+			}
+			final StatePair<?,?> other = (StatePair<?,?>) obj;
+			return mLeft == other.mLeft && mRight == other.mRight;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * System.identityHashCode(mLeft) + System.identityHashCode(mRight);
+		}
+	}
+
 	/**
 	 * Adds a semantic value to all accepting states of this automaton.
 	 *
@@ -185,6 +543,20 @@ public class Automaton<S,T> {
 		return true;
 	}
 
+	/**
+	 * Counts the states reachable from the initial state.
+	 *
+	 * @return the number of states
+	 */
+	public int stateCount() {
+		checkCannibalized();
+		return mInitial.findReachable().size();
+	}
+
+	@Nonnull State<S,T> getInitial() {
+		return mInitial;
+	}
+
 	/**
 	 * Maps all reachable states to unique IDs.  Mappings may not be stable
 	 * from one invocation to the next.
@@ -200,7 +572,45 @@ public class Automaton<S,T> {
 		return stateIds;
 	}
 
+	/**
+	 * Converts this automaton to a DFA in which every accepting state has at
+	 * most one semantic value.  Where several values meet in one state, as
+	 * when the rules of a lexer match the same word, the first value in the
+	 * order of the comparator wins.  The resulting automaton can be given to
+	 * a single semantics matcher.
+	 *
+	 * @param priority orders semantic values from highest to lowest priority
+	 * @return this automaton
+	 * @see Priorities#byOrder(List)
+	 */
+	public Automaton<S,T> determinize(@Nonnull final Comparator<? super T> priority) {
+		determinize();
+		for(final State<S,T> state : mAccepting) {
+			state.retainFirst(priority);
+		}
+		return this;
+	}
+
 	public Automaton<S,T> determinize() {
+		tryDeterminize(Integer.MAX_VALUE);
+		return this;
+	}
+
+	/**
+	 * Converts this automaton to a DFA unless the DFA would have more than a
+	 * given number of states.  Subset construction gives up as soon as it
+	 * finds one state too many, so the cost of a failed attempt is bounded
+	 * by the budget.  If it gives up, this automaton is not modified.  An
+	 * automaton that is already deterministic is accepted whatever its size.
+	 *
+	 * @param maxStates the most states the DFA may have
+	 * @return true if this automaton is now deterministic; otherwise false
+	 * @throws IllegalArgumentException if {@code maxStates} is less than 1
+	 */
+	public boolean tryDeterminize(final int maxStates) {
+		if(maxStates < 1) {
+			throw new IllegalArgumentException("maxStates < 1");
+		}
 		checkCannibalized();
 		if(!mDeterminized) {
 			/* See https://www.youtube.com/watch?v=taClnxU-nao */
@@ -257,6 +667,10 @@ public class Automaton<S,T> {
 						tempState.getTransitions(input, transitions);
 						assert !transitions.isEmpty();
 						if(!powerSetsToTempStates.containsKey(transitions)) {
+							if(powerSetsToTempStates.size() >= maxStates) {
+								/* Nothing has been modified yet. */
+								return false;
+							}
 							final Set<State<S,T>> copy = new HashSet<>(transitions);
 							powerSetsToTempStates.put(copy, new State<S,T>());
 							queue.add(copy);
@@ -295,74 +709,201 @@ public class Automaton<S,T> {
 			}
 			/* Rebuild the pattern. */
 			mInitial = powerSetsToDfaStates.get(init);
+			mFlatUnion = false;
 			findAccepting();
 			mDeterminized = true;
 		}
-		return this;
+		return true;
 	}
 
+	/**
+	 * Creates a GraphViz representation of this automaton.
+	 *
+	 * @param name the name of the graph
+	 * @param labeler labels the transitions
+	 * @return the DOT document
+	 * @see #writeGraphViz(Appendable, String, TransitionLabeler, int)
+	 */
 	public String toGraphViz(@Nonnull final String name, @Nonnull final TransitionLabeler<S> labeler) {
-		final Map<State<S,T>, Integer> stateIds = getStateIds();
-		StringBuilder sb = new StringBuilder();
-		sb.append("digraph ").append(name).append(" {\n\trankdir=LR\n");
-		sb.append("\tnode [shape=circle fixedsize=shape]\n");
-		/* Declare nodes. */
-		Set<T> semanticValues = new HashSet<T>();
-		for(final State<S,T> state : stateIds.keySet()) {
-			sb.append('\t').append(stateIds.get(state));
-			sb.append(" [label=\"").append(stateIds.get(state));
+		final StringBuilder sb = new StringBuilder();
+		try {
+			writeGraphViz(sb, name, labeler, Integer.MAX_VALUE);
+		}
+		catch(IOException e) {
+			throw new AssertionError(e);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Writes a GraphViz representation of this automaton.  States are visited
+	 * breadth-first from the initial state and written as they are visited,
+	 * so the document is never held in memory.  Parallel transitions between
+	 * two states are merged into one edge; byte inputs are merged into
+	 * ranges.  After {@code maxStates} states have been written, transitions
+	 * to further states lead to a single summary node.
+	 *
+	 * @param out the destination
+	 * @param name the name of the graph
+	 * @param labeler labels the transitions
+	 * @param maxStates the maximum number of states to write
+	 * @throws IOException if the destination throws it
+	 */
+	public void writeGraphViz(@Nonnull final Appendable out,
+							  @Nonnull final String name,
+							  @Nonnull final TransitionLabeler<S> labeler,
+							  final int maxStates) throws IOException {
+		checkCannibalized();
+		out.append("digraph ").append(name).append(" {\n\trankdir=LR\n");
+		out.append("\tnode [shape=circle fixedsize=shape]\n");
+		/* IDs are assigned as states are discovered, up to the limit. */
+		final Map<State<S,T>, Integer> stateIds = new IdentityHashMap<>();
+		final Queue<State<S,T>> queue = new LinkedList<>();
+		stateIds.put(mInitial, 0);
+		queue.add(mInitial);
+		boolean truncated = false;
+		final Set<T> semanticValues = new HashSet<>();
+		final Set<S> inputs = new HashSet<>();
+		final Set<State<S,T>> targets = new HashSet<>();
+		/* Inputs grouped by target; the null key is the summary node. */
+		final Map<State<S,T>, List<S>> edges = new LinkedHashMap<>();
+		final StringBuilder label = new StringBuilder();
+		while(!queue.isEmpty()) {
+			final State<S,T> state = queue.remove();
+			final int id = stateIds.get(state);
+			/* Declare the node. */
+			out.append('\t').append(Integer.toString(id));
+			out.append(" [label=\"").append(Integer.toString(id));
 			if(state.isAccepting()) {
-				semanticValues.clear();
 				state.getSemanticValues(semanticValues);
 				if(!semanticValues.isEmpty()) {
-					sb.append("\\n");
-					for(T info : semanticValues) {
-						sb.append(info).append(", ");
+					out.append("\\n");
+					label.setLength(0);
+					for(final T info : semanticValues) {
+						label.append(info).append(", ");
 					}
-					sb.setLength(sb.length() - 2);
+					label.setLength(label.length() - 2);
+					out.append(escape(label));
 					semanticValues.clear();
 				}
-				sb.append("\" shape=doublecircle");
+				out.append("\" shape=doublecircle");
 			}
 			else {
-				sb.append('"'); // just close the label
+				out.append('"'); // just close the label
 			}
-			sb.append("];\n");
-		}
-		/* Declare edges. */
-		final Set<S> inputs = new HashSet<>();
-		final Set<State<S,T>> edges = new HashSet<>();
-		for(final State<S,T> state : stateIds.keySet()) {
+			out.append("];\n");
 			/* Epsilon transitions... */
-			state.getEpsilons(edges);
-			if(!edges.isEmpty()) {
-				sb.append('\t').append(stateIds.get(state)).append(" -> { ");
-				for(final State<S,T> e : edges) {
-					if(e != state) { // omit self-epsilons
-						sb.append(stateIds.get(e)).append(' ');
+			state.getEpsilons(targets);
+			targets.remove(state); // omit self-epsilons
+			if(!targets.isEmpty()) {
+				out.append('\t').append(Integer.toString(id)).append(" -> { ");
+				for(final State<S,T> target : targets) {
+					final Integer targetId = discover(target, stateIds, queue, maxStates);
+					if(targetId == null) {
+						truncated = true;
+						out.append("more ");
+					}
+					else {
+						out.append(Integer.toString(targetId)).append(' ');
 					}
 				}
-				sb.append("} [label=\"\u03b5\"];\n");
-				edges.clear();
+				out.append("} [label=\"\u03b5\"];\n");
+				targets.clear();
 			}
-			/* Input transitions... */
+			/* Input transitions, merged by target... */
 			state.getInputs(inputs);
-			if(!inputs.isEmpty()) {
-				for(final S input : inputs) {
-					sb.append('\t').append(stateIds.get(state)).append(" -> { ");
-					state.getTransitions(input, edges);
-					if(!edges.isEmpty()) {
-						for(final State<S,T> transition : edges) {
-							sb.append(stateIds.get(transition)).append(' ');
-						}
-						sb.append("} [label=\"").append(labeler.getLabel(input)).append("\"];\n");
-						edges.clear();
+			for(final S input : inputs) {
+				state.getTransitions(input, targets);
+				for(final State<S,T> target : targets) {
+					final State<S,T> key = discover(target, stateIds, queue, maxStates) == null ? null : target;
+					List<S> list = edges.get(key);
+					if(list == null) {
+						list = new ArrayList<>();
+						edges.put(key, list);
 					}
+					list.add(input);
 				}
-				inputs.clear();
+				targets.clear();
+			}
+			inputs.clear();
+			for(final Map.Entry<State<S,T>, List<S>> edge : edges.entrySet()) {
+				out.append('\t').append(Integer.toString(id)).append(" -> ");
+				if(edge.getKey() == null) {
+					truncated = true;
+					out.append("more");
+				}
+				else {
+					out.append(Integer.toString(stateIds.get(edge.getKey())));
+				}
+				label.setLength(0);
+				appendLabel(label, edge.getValue(), labeler);
+				out.append(" [label=\"").append(escape(label)).append("\"];\n");
 			}
+			edges.clear();
 		}
-		sb.append("}");
-		return sb.toString();
+		if(truncated) {
+			out.append("\tmore [label=\"more than ").append(Integer.toString(maxStates));
+			out.append(" states\" shape=box style=dashed];\n");
+		}
+		out.append("}");
+	}
+
+	/**
+	 * Gets the ID of a state, assigning one and queueing the state if it is
+	 * new and the limit has not been reached.
+	 *
+	 * @return the ID, or null if the state is beyond the limit
+	 */
+	@Nullable private Integer discover(@Nonnull final State<S,T> state,
+									   @Nonnull final Map<State<S,T>, Integer> stateIds,
+									   @Nonnull final Queue<State<S,T>> queue,
+									   final int maxStates) {
+		Integer id = stateIds.get(state);
+		if(id == null && stateIds.size() < maxStates) {
+			id = stateIds.size();
+			stateIds.put(state, id);
+			queue.add(state);
+		}
+		return id;
+	}
+
+	/**
+	 * Labels a set of parallel transitions.  Runs of consecutive byte values
+	 * are written as ranges.
+	 */
+	private static <S> void appendLabel(@Nonnull final StringBuilder label,
+										@Nonnull final List<S> inputs,
+										@Nonnull final TransitionLabeler<S> labeler) {
+		if(inputs.get(0) instanceof Byte) {
+			final BitSet bytes = new BitSet(256);
+			final Map<Integer, S> symbols = new HashMap<>();
+			for(final S input : inputs) {
+				final int b = ((Byte) input) & 0xFF;
+				bytes.set(b);
+				symbols.put(b, input);
+			}
+			for(int lo = bytes.nextSetBit(0); lo >= 0; lo = bytes.nextSetBit(lo + 1)) {
+				int hi = lo;
+				while(hi < 255 && bytes.get(hi + 1)) {
+					++hi;
+				}
+				label.append(labeler.getLabel(symbols.get(lo)));
+				if(hi > lo) {
+					label.append('-').append(labeler.getLabel(symbols.get(hi)));
+				}
+				label.append(", ");
+				lo = hi;
+			}
+		}
+		else {
+			for(final S input : inputs) {
+				label.append(labeler.getLabel(input)).append(", ");
+			}
+		}
+		label.setLength(label.length() - 2);
+	}
+
+	private static String escape(@Nonnull final CharSequence label) {
+		return label.toString().replace("\\", "\\\\").replace("\"", "\\\"");
 	}
 }
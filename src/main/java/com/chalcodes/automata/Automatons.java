@@ -2,7 +2,9 @@ package com.chalcodes.automata;
 
 import javax.annotation.Nonnull;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -13,6 +15,115 @@ import java.util.List;
 public class Automatons {
 	private Automatons() {}
 
+	private static final List<Byte> gBytes;
+
+	static {
+		final List<Byte> bytes = new ArrayList<>(256);
+		for(int i = 0; i < 256; ++i) {
+			bytes.add((byte) i);
+		}
+		gBytes = Collections.unmodifiableList(bytes);
+	}
+
+	/**
+	 * Gets all 256 byte values, for use as an alphabet.
+	 *
+	 * @return an unmodifiable list of all byte values
+	 * @see Automaton#complement(Collection)
+	 */
+	public static List<Byte> bytes() {
+		return gBytes;
+	}
+
+	/**
+	 * Creates an automaton that accepts the union of the languages of the
+	 * members, which will be cannibalized.  Unlike repeated calls to
+	 * {@link Automaton#union(Automaton)}, which nest a new initial state for
+	 * each member, this creates one initial state with a transition to every
+	 * member.
+	 * <p>
+	 * Members are independent until they are joined, so they can be parsed
+	 * on separate threads.  Partial unions created by this method can be
+	 * joined by another call to this method and the result is still one
+	 * level deep, which permits merging by tree reduction.
+	 *
+	 * @param members the members
+	 * @param <S> the type of symbol received as input
+	 * @param <T> the type of semantic value associated with accepting states
+	 * @return the union
+	 */
+	public static <S,T> Automaton<S,T> unionAll(@Nonnull final Collection<Automaton<S,T>> members) {
+		return Automaton.unionAll(members);
+	}
+
+	/**
+	 * Creates an automaton that accepts the union of the languages of the
+	 * members, which will be cannibalized.  Each semantic value is first added
+	 * to the accepting states of the member at the same index.
+	 *
+	 * @param members the members
+	 * @param semanticValues the semantic values of the members
+	 * @param <S> the type of symbol received as input
+	 * @param <T> the type of semantic value associated with accepting states
+	 * @return the union
+	 * @throws IllegalArgumentException if the lists have different sizes
+	 * @see #unionAll(Collection)
+	 */
+	public static <S,T> Automaton<S,T> unionAll(@Nonnull final List<Automaton<S,T>> members,
+												@Nonnull final List<T> semanticValues) {
+		if(members.size() != semanticValues.size()) {
+			throw new IllegalArgumentException("members.size() != semanticValues.size()");
+		}
+		for(int i = 0; i < members.size(); ++i) {
+			members.get(i).addSemanticValue(semanticValues.get(i));
+		}
+		return Automaton.unionAll(members);
+	}
+
+	/**
+	 * Creates a deterministic automaton that accepts every sequence of
+	 * symbols within a Levenshtein distance of a word, counting insertions,
+	 * deletions and substitutions of single symbols.  The automaton is built
+	 * directly as a DFA, in time and space linear in the length of the word
+	 * for a fixed distance.  Intersect it with a dictionary automaton to find
+	 * the words of the dictionary near the word.
+	 *
+	 * @param word the word
+	 * @param distance the greatest number of edits
+	 * @param alphabet the symbols that may be inserted or substituted
+	 * @param <S> the type of symbol received as input
+	 * @param <T> the type of semantic value associated with accepting states
+	 * @return the automaton
+	 * @throws IllegalArgumentException if the distance is negative
+	 * @see Automaton#intersect(Automaton, SemanticCombination)
+	 */
+	public static <S,T> Automaton<S,T> levenshtein(@Nonnull final List<S> word,
+												   final int distance,
+												   @Nonnull final Collection<S> alphabet) {
+		return Levenshtein.build(word, distance, alphabet);
+	}
+
+	/**
+	 * Creates a deterministic automaton that accepts every byte sequence
+	 * within a Levenshtein distance of the remaining bytes of a buffer.  Any
+	 * byte may be inserted or substituted.  The position of the buffer is not
+	 * changed.
+	 *
+	 * @param word the word
+	 * @param distance the greatest number of edits
+	 * @param <T> the type of semantic value associated with accepting states
+	 * @return the automaton
+	 * @throws IllegalArgumentException if the distance is negative
+	 * @see #levenshtein(List, int, Collection)
+	 */
+	public static <T> Automaton<Byte,T> levenshtein(@Nonnull final ByteBuffer word, final int distance) {
+		final List<Byte> symbols = new ArrayList<>(word.remaining());
+		for(int i = word.position(); i < word.limit(); ++i) {
+			symbols.add(word.get(i));
+		}
+		return Levenshtein.build(symbols, distance, gBytes);
+	}
+
 	public static <S,T> Automaton<S,T> empty() {
 		final State<S,T> initial = new State<>();
 		initial.setAccepting(true);
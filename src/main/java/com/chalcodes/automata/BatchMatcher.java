@@ -0,0 +1,361 @@
+package com.chalcodes.automata;
+
+import javax.annotation.Nonnull;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Matches many small messages at once.  Each message is taken to be
+ * complete, so there is no underflow to handle, and results are written to
+ * primitive arrays instead of being read back one call at a time.  The
+ * semantic value of each match is written as an id, which is an index into
+ * {@link #getSemanticValues()}.
+ * <p>
+ * Messages are matched in the match mode of the matcher.  A batch can be
+ * divided among the threads of an executor, each of which matches a
+ * contiguous range of messages with a matcher of its own.  Each task
+ * interleaves the steps of several messages to hide the latency of table
+ * loads.  A batch matcher is thread safe.
+ *
+ * @param <T> the type of semantic value associated with accepting states
+ * @author Kevin Krumwiede
+ */
+public class BatchMatcher<T> {
+	/** The length of a message that did not match. */
+	public static final int NO_MATCH = -1;
+	/** The id of a match without a semantic value, or of no match. */
+	public static final int NO_SEMANTIC_VALUE = -1;
+	/** The number of messages stepped at once by default. */
+	public static final int DEFAULT_LANES = 4;
+
+	private final SingleSemanticsByteMatcher<T> mMatcher;
+	private final int[] mSemanticIds;
+	private final List<T> mSemanticValues;
+	private final int mLanes;
+
+	/**
+	 * Creates a batch matcher that interleaves {@link #DEFAULT_LANES}
+	 * messages.  The matcher is copied, so later changes to its match mode
+	 * do not affect this batch matcher.
+	 *
+	 * @param matcher the matcher
+	 */
+	public BatchMatcher(@Nonnull final SingleSemanticsByteMatcher<T> matcher) {
+		this(matcher, DEFAULT_LANES);
+	}
+
+	/**
+	 * Creates a batch matcher.  Each task steps up to the given number of
+	 * messages in turn, one byte at a time, so the table loads of different
+	 * messages overlap instead of waiting for each other.  This pays off
+	 * when the table is too large for the cache.  With one lane, or a
+	 * backward matcher, messages are matched one after another.  The
+	 * matcher is copied, so later changes to its match mode do not affect
+	 * this batch matcher.
+	 *
+	 * @param matcher the matcher
+	 * @param lanes the number of messages each task steps at once
+	 * @throws IllegalArgumentException if the number of lanes is not
+	 * positive
+	 */
+	public BatchMatcher(@Nonnull final SingleSemanticsByteMatcher<T> matcher, final int lanes) {
+		if(lanes < 1) {
+			throw new IllegalArgumentException("lanes < 1");
+		}
+		mMatcher = matcher.copy();
+		mLanes = matcher.isBackward() ? 1 : lanes;
+		final List<T> byState = matcher.semanticValueList();
+		final Map<T, Integer> ids = new HashMap<>();
+		final List<T> values = new ArrayList<>();
+		mSemanticIds = new int[byState.size()];
+		for(int state = 0; state < mSemanticIds.length; ++state) {
+			final T semanticValue = byState.get(state);
+			if(semanticValue == null) {
+				mSemanticIds[state] = NO_SEMANTIC_VALUE;
+				continue;
+			}
+			Integer id = ids.get(semanticValue);
+			if(id == null) {
+				id = values.size();
+				ids.put(semanticValue, id);
+				values.add(semanticValue);
+			}
+			mSemanticIds[state] = id;
+		}
+		mSemanticValues = Collections.unmodifiableList(values);
+	}
+
+	/**
+	 * Gets the semantic values, indexed by id.
+	 *
+	 * @return an unmodifiable list of semantic values
+	 */
+	public List<T> getSemanticValues() {
+		return mSemanticValues;
+	}
+
+	/**
+	 * Matches the remaining bytes of each buffer on the current thread.  The
+	 * positions and limits of the buffers are not changed.
+	 *
+	 * @param messages the messages
+	 * @param lengths receives the length of each match, or {@link #NO_MATCH}
+	 * @param semanticIds receives the semantic id of each match, or
+	 * {@link #NO_SEMANTIC_VALUE}
+	 * @throws IllegalArgumentException if a result array is too short
+	 */
+	public void match(@Nonnull final ByteBuffer[] messages,
+					  @Nonnull final int[] lengths,
+					  @Nonnull final int[] semanticIds) {
+		checkResults(messages.length, lengths, semanticIds);
+		match(messages, lengths, semanticIds, 0, messages.length);
+	}
+
+	/**
+	 * Matches the remaining bytes of each buffer, dividing the work among
+	 * tasks run by an executor.  Returns when every task is done.  The
+	 * positions and limits of the buffers are not changed.
+	 *
+	 * @param messages the messages
+	 * @param lengths receives the length of each match, or {@link #NO_MATCH}
+	 * @param semanticIds receives the semantic id of each match, or
+	 * {@link #NO_SEMANTIC_VALUE}
+	 * @param executor runs the tasks
+	 * @param tasks the number of tasks
+	 * @throws IllegalArgumentException if a result array is too short or the
+	 * number of tasks is not positive
+	 * @throws InterruptedException if interrupted while waiting for the tasks
+	 */
+	public void match(@Nonnull final ByteBuffer[] messages,
+					  @Nonnull final int[] lengths,
+					  @Nonnull final int[] semanticIds,
+					  @Nonnull final Executor executor,
+					  final int tasks) throws InterruptedException {
+		checkResults(messages.length, lengths, semanticIds);
+		execute(messages.length, executor, tasks, new Range() {
+			@Override
+			public void run(final int from, final int to) {
+				match(messages, lengths, semanticIds, from, to);
+			}
+		});
+	}
+
+	/**
+	 * Matches messages stored back to back in one array on the current
+	 * thread.  Message {@code i} occupies the bytes from
+	 * {@code offsets[i]} up to {@code offsets[i + 1]}, so there is one more
+	 * offset than there are messages.
+	 *
+	 * @param data the messages
+	 * @param offsets the offsets of the messages
+	 * @param lengths receives the length of each match, or {@link #NO_MATCH}
+	 * @param semanticIds receives the semantic id of each match, or
+	 * {@link #NO_SEMANTIC_VALUE}
+	 * @throws IllegalArgumentException if a result array is too short
+	 * @throws IndexOutOfBoundsException if an offset is out of bounds
+	 */
+	public void match(@Nonnull final byte[] data,
+					  @Nonnull final int[] offsets,
+					  @Nonnull final int[] lengths,
+					  @Nonnull final int[] semanticIds) {
+		final int count = checkOffsets(offsets, data.length);
+		checkResults(count, lengths, semanticIds);
+		match(data, offsets, lengths, semanticIds, 0, count);
+	}
+
+	/**
+	 * Matches messages stored back to back in one array, dividing the work
+	 * among tasks run by an executor.  Returns when every task is done.
+	 *
+	 * @param data the messages
+	 * @param offsets the offsets of the messages
+	 * @param lengths receives the length of each match, or {@link #NO_MATCH}
+	 * @param semanticIds receives the semantic id of each match, or
+	 * {@link #NO_SEMANTIC_VALUE}
+	 * @param executor runs the tasks
+	 * @param tasks the number of tasks
+	 * @throws IllegalArgumentException if a result array is too short or the
+	 * number of tasks is not positive
+	 * @throws IndexOutOfBoundsException if an offset is out of bounds
+	 * @throws InterruptedException if interrupted while waiting for the tasks
+	 * @see #match(byte[], int[], int[], int[])
+	 */
+	public void match(@Nonnull final byte[] data,
+					  @Nonnull final int[] offsets,
+					  @Nonnull final int[] lengths,
+					  @Nonnull final int[] semanticIds,
+					  @Nonnull final Executor executor,
+					  final int tasks) throws InterruptedException {
+		final int count = checkOffsets(offsets, data.length);
+		checkResults(count, lengths, semanticIds);
+		execute(count, executor, tasks, new Range() {
+			@Override
+			public void run(final int from, final int to) {
+				match(data, offsets, lengths, semanticIds, from, to);
+			}
+		});
+	}
+
+	private void match(@Nonnull final ByteBuffer[] messages,
+					   @Nonnull final int[] lengths,
+					   @Nonnull final int[] semanticIds,
+					   final int from,
+					   final int to) {
+		if(mLanes > 1) {
+			new Interleaver(mMatcher, mLanes).match(new Interleaver.Messages() {
+				@Nonnull @Override
+				public ByteBuffer buffer(final int index) {
+					return messages[index];
+				}
+
+				@Override
+				public int start(final int index) {
+					return messages[index].position();
+				}
+
+				@Override
+				public int end(final int index) {
+					return messages[index].limit();
+				}
+			}, from, to, lengths, semanticIds, mSemanticIds, NO_SEMANTIC_VALUE);
+			return;
+		}
+		final SingleSemanticsByteMatcher<T> matcher = mMatcher.copy();
+		for(int i = from; i < to; ++i) {
+			final ByteBuffer message = messages[i];
+			record(matcher, matcher.matchMessage(message, message.position()), lengths, semanticIds, i);
+		}
+	}
+
+	private void match(@Nonnull final byte[] data,
+					   @Nonnull final int[] offsets,
+					   @Nonnull final int[] lengths,
+					   @Nonnull final int[] semanticIds,
+					   final int from,
+					   final int to) {
+		final ByteBuffer buffer = ByteBuffer.wrap(data);
+		if(mLanes > 1) {
+			new Interleaver(mMatcher, mLanes).match(new Interleaver.Messages() {
+				@Nonnull @Override
+				public ByteBuffer buffer(final int index) {
+					return buffer;
+				}
+
+				@Override
+				public int start(final int index) {
+					return offsets[index];
+				}
+
+				@Override
+				public int end(final int index) {
+					return offsets[index + 1];
+				}
+			}, from, to, lengths, semanticIds, mSemanticIds, NO_SEMANTIC_VALUE);
+			return;
+		}
+		final SingleSemanticsByteMatcher<T> matcher = mMatcher.copy();
+		/* One buffer is reused for every message by moving its limit. */
+		for(int i = from; i < to; ++i) {
+			buffer.limit(offsets[i + 1]);
+			record(matcher, matcher.matchMessage(buffer, offsets[i]), lengths, semanticIds, i);
+		}
+	}
+
+	private void record(@Nonnull final SingleSemanticsByteMatcher<T> matcher,
+						final int length,
+						@Nonnull final int[] lengths,
+						@Nonnull final int[] semanticIds,
+						final int index) {
+		lengths[index] = length;
+		semanticIds[index] = length == NO_MATCH ? NO_SEMANTIC_VALUE : mSemanticIds[matcher.matchState()];
+	}
+
+	private static void checkResults(final int count,
+									 @Nonnull final int[] lengths,
+									 @Nonnull final int[] semanticIds) {
+		if(lengths.length < count || semanticIds.length < count) {
+			throw new IllegalArgumentException("result array too short");
+		}
+	}
+
+	private static int checkOffsets(@Nonnull final int[] offsets, final int length) {
+		if(offsets.length == 0) {
+			throw new IllegalArgumentException("no offsets");
+		}
+		if(offsets[0] < 0 || offsets[offsets.length - 1] > length) {
+			throw new IndexOutOfBoundsException("offsets outside data");
+		}
+		for(int i = 1; i < offsets.length; ++i) {
+			if(offsets[i] < offsets[i - 1]) {
+				throw new IllegalArgumentException("offsets out of order");
+			}
+		}
+		return offsets.length - 1;
+	}
+
+	/** Matches a range of messages. */
+	private interface Range {
+		void run(int from, int to);
+	}
+
+	/**
+	 * Divides messages into contiguous ranges and runs each range as a task,
+	 * waiting for all of them.  An exception thrown by a task is rethrown, as
+	 * is the rejection of a task by the executor.
+	 */
+	private static void execute(final int count,
+								@Nonnull final Executor executor,
+								final int tasks,
+								@Nonnull final Range range) throws InterruptedException {
+		if(tasks < 1) {
+			throw new IllegalArgumentException("tasks < 1");
+		}
+		final int ranges = Math.max(1, Math.min(tasks, count));
+		final CountDownLatch latch = new CountDownLatch(ranges);
+		final AtomicReference<Throwable> failure = new AtomicReference<>();
+		for(int i = 0; i < ranges; ++i) {
+			final int from = (int) ((long) count * i / ranges);
+			final int to = (int) ((long) count * (i + 1) / ranges);
+			try {
+				executor.execute(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							range.run(from, to);
+						}
+						catch(final Throwable t) {
+							failure.compareAndSet(null, t);
+						}
+						finally {
+							latch.countDown();
+						}
+					}
+				});
+			}
+			catch(final RejectedExecutionException e) {
+				/* Wait for the tasks already started before giving up. */
+				for(int j = i; j < ranges; ++j) {
+					latch.countDown();
+				}
+				latch.await();
+				throw e;
+			}
+		}
+		latch.await();
+		final Throwable t = failure.get();
+		if(t instanceof RuntimeException) {
+			throw (RuntimeException) t;
+		}
+		if(t instanceof Error) {
+			throw (Error) t;
+		}
+	}
+}
@@ -0,0 +1,207 @@
+package com.chalcodes.automata;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The compiled tables of a bit-parallel NFA simulation.  An automaton is
+ * compiled without subset construction into a Glushkov-style set of
+ * positions in which every transition into a position has the same set of
+ * source positions, regardless of the input.  A set of active positions is
+ * then advanced by one input with
+ * <pre>next = (follow(p1) | follow(p2) | ...) &amp; mask(input)</pre>
+ * over {@code long} words, so the cost of a step is bounded by the number of
+ * active positions times the number of words.
+ *
+ * @param <T> the type of semantic value associated with accepting states
+ * @author Kevin Krumwiede
+ */
+final class BitParallelNfa<T> {
+	/** The number of {@code long} words in a set of positions. */
+	final int mWords;
+	/** The positions active before any input is consumed. */
+	final long[] mInitial;
+	/** The positions that may follow each position. */
+	final long[][] mFollow;
+	/** The positions that may be entered on each input. */
+	final long[][] mMasks;
+	/** The positions whose epsilon closures contain an accepting state. */
+	final long[] mAccepting;
+	/** The positions that have any following positions. */
+	final long[] mExits;
+	/** The semantic values of each position. */
+	final List<Set<T>> mSemanticValues;
+
+	private BitParallelNfa(final int positions, @Nonnull final List<Set<T>> semanticValues) {
+		mWords = Math.max(1, (positions + 63) >>> 6);
+		mInitial = new long[mWords];
+		mFollow = new long[positions][mWords];
+		mMasks = new long[256][mWords];
+		mAccepting = new long[mWords];
+		mExits = new long[mWords];
+		mSemanticValues = semanticValues;
+	}
+
+	/**
+	 * Compiles an automaton.  The automaton is not modified.
+	 *
+	 * @param automaton the automaton
+	 * @param single true if each position must have at most one semantic value
+	 * @param <T> the type of semantic values
+	 * @return the compiled tables
+	 * @throws IllegalArgumentException if {@code single} is true and a
+	 * position has multiple semantic values
+	 */
+	static <T> BitParallelNfa<T> compile(@Nonnull final Automaton<Byte,T> automaton, final boolean single) {
+		automaton.checkCannibalized();
+		final State<Byte,T> initial = automaton.getInitial();
+		/* The states of the epsilon-free automaton are the initial state and
+		 * the targets of input transitions, each standing for its epsilon
+		 * closure. */
+		final Map<State<Byte,T>, Set<State<Byte,T>>> closures = new LinkedHashMap<>();
+		closures.put(initial, initial.getEpsilonClosure());
+		for(final State<Byte,T> state : initial.findReachable()) {
+			final Set<Byte> inputs = new HashSet<>();
+			state.getInputs(inputs);
+			final Set<State<Byte,T>> targets = new HashSet<>();
+			for(final Byte input : inputs) {
+				state.getTransitions(input, targets);
+			}
+			for(final State<Byte,T> target : targets) {
+				if(!closures.containsKey(target)) {
+					closures.put(target, target.getEpsilonClosure());
+				}
+			}
+		}
+		/* For each target and input, find the sources. */
+		final Map<State<Byte,T>, Map<Byte, Set<State<Byte,T>>>> sources = new LinkedHashMap<>();
+		final Set<Byte> inputs = new HashSet<>();
+		final Set<State<Byte,T>> targets = new HashSet<>();
+		for(final Map.Entry<State<Byte,T>, Set<State<Byte,T>>> entry : closures.entrySet()) {
+			for(final State<Byte,T> state : entry.getValue()) {
+				state.getInputs(inputs);
+				for(final Byte input : inputs) {
+					state.getTransitions(input, targets);
+					for(final State<Byte,T> target : targets) {
+						Map<Byte, Set<State<Byte,T>>> byInput = sources.get(target);
+						if(byInput == null) {
+							byInput = new HashMap<>();
+							sources.put(target, byInput);
+						}
+						Set<State<Byte,T>> set = byInput.get(input);
+						if(set == null) {
+							set = new HashSet<>();
+							byInput.put(input, set);
+						}
+						set.add(entry.getKey());
+					}
+					targets.clear();
+				}
+				inputs.clear();
+			}
+		}
+		/* A position is a target paired with the inputs that share one set
+		 * of sources.  Position 0 is the initial state. */
+		final List<State<Byte,T>> positionTargets = new ArrayList<>();
+		final List<BitSet> positionInputs = new ArrayList<>();
+		final List<Set<State<Byte,T>>> positionSources = new ArrayList<>();
+		positionTargets.add(initial);
+		positionInputs.add(new BitSet());
+		positionSources.add(Collections.<State<Byte,T>>emptySet());
+		for(final Map.Entry<State<Byte,T>, Map<Byte, Set<State<Byte,T>>>> entry : sources.entrySet()) {
+			final Map<Set<State<Byte,T>>, BitSet> groups = new LinkedHashMap<>();
+			for(final Map.Entry<Byte, Set<State<Byte,T>>> byInput : entry.getValue().entrySet()) {
+				BitSet group = groups.get(byInput.getValue());
+				if(group == null) {
+					group = new BitSet(256);
+					groups.put(byInput.getValue(), group);
+				}
+				group.set(byInput.getKey() & 0xFF);
+			}
+			for(final Map.Entry<Set<State<Byte,T>>, BitSet> group : groups.entrySet()) {
+				positionTargets.add(entry.getKey());
+				positionInputs.add(group.getValue());
+				positionSources.add(group.getKey());
+			}
+		}
+		final int positions = positionTargets.size();
+		final List<Set<T>> semanticValues = new ArrayList<>(positions);
+		final BitParallelNfa<T> nfa = new BitParallelNfa<>(positions, semanticValues);
+		set(nfa.mInitial, 0);
+		/* Positions with the same target have the same follow set. */
+		final Map<State<Byte,T>, long[]> follow = new HashMap<>();
+		for(final State<Byte,T> state : closures.keySet()) {
+			follow.put(state, new long[nfa.mWords]);
+		}
+		for(int p = 0; p < positions; ++p) {
+			for(final State<Byte,T> source : positionSources.get(p)) {
+				set(follow.get(source), p);
+			}
+			final BitSet labels = positionInputs.get(p);
+			for(int b = labels.nextSetBit(0); b >= 0; b = labels.nextSetBit(b + 1)) {
+				set(nfa.mMasks[b], p);
+			}
+		}
+		final Set<T> set = new HashSet<>();
+		for(int p = 0; p < positions; ++p) {
+			final State<Byte,T> target = positionTargets.get(p);
+			final long[] words = follow.get(target);
+			System.arraycopy(words, 0, nfa.mFollow[p], 0, nfa.mWords);
+			if(!isEmpty(words)) {
+				set(nfa.mExits, p);
+			}
+			boolean accepting = false;
+			for(final State<Byte,T> state : closures.get(target)) {
+				if(state.isAccepting()) {
+					accepting = true;
+					state.getSemanticValues(set);
+				}
+			}
+			if(accepting) {
+				set(nfa.mAccepting, p);
+			}
+			if(single && set.size() > 1) {
+				throw new IllegalArgumentException("multiple semantics");
+			}
+			semanticValues.add(set.isEmpty() ?
+					Collections.<T>emptySet() :
+					Collections.unmodifiableSet(new HashSet<>(set)));
+			set.clear();
+		}
+		return nfa;
+	}
+
+	int positionCount() {
+		return mFollow.length;
+	}
+
+	static void set(@Nonnull final long[] words, final int bit) {
+		words[bit >>> 6] |= 1L << bit;
+	}
+
+	static boolean isEmpty(@Nonnull final long[] words) {
+		for(final long word : words) {
+			if(word != 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	static boolean intersects(@Nonnull final long[] a, @Nonnull final long[] b) {
+		for(int i = 0; i < a.length; ++i) {
+			if((a[i] & b[i]) != 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,14 @@
+package com.chalcodes.automata;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Receives a report each time {@link ByteMatchers} builds a table-based
+ * matcher.  Listeners are called on the building thread.
+ *
+ * @author Kevin Krumwiede
+ * @see ByteMatchers#addBuildListener(BuildListener)
+ */
+public interface BuildListener {
+	void built(@Nonnull ByteMatcher matcher, @Nonnull BuildReport report);
+}
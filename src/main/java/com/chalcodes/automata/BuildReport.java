@@ -0,0 +1,86 @@
+package com.chalcodes.automata;
+
+/**
+ * Describes the compilation of a table-based byte matcher.
+ *
+ * @author Kevin Krumwiede
+ * @see AbstractByteMatcher#getBuildReport()
+ * @see BuildListener
+ */
+public class BuildReport {
+	private final int mNfaStates;
+	private final int mDfaStates;
+	private final long mDeterminizeNanos;
+	private final long mTableBytes;
+	private final long mBuildNanos;
+
+	BuildReport(final int nfaStates,
+				final int dfaStates,
+				final long determinizeNanos,
+				final long tableBytes,
+				final long buildNanos) {
+		mNfaStates = nfaStates;
+		mDfaStates = dfaStates;
+		mDeterminizeNanos = determinizeNanos;
+		mTableBytes = tableBytes;
+		mBuildNanos = buildNanos;
+	}
+
+	/**
+	 * Gets the number of states in the automaton before it was determinized.
+	 * If the automaton was already deterministic, this is the same as the
+	 * number of DFA states.
+	 *
+	 * @return the number of NFA states
+	 */
+	public int getNfaStates() {
+		return mNfaStates;
+	}
+
+	/**
+	 * Gets the number of states in the transition table.
+	 *
+	 * @return the number of DFA states
+	 */
+	public int getDfaStates() {
+		return mDfaStates;
+	}
+
+	/**
+	 * Gets the time spent determinizing the automaton.
+	 *
+	 * @return the time in nanoseconds
+	 */
+	public long getDeterminizeNanos() {
+		return mDeterminizeNanos;
+	}
+
+	/**
+	 * Gets the estimated heap size of the transition table and accepting
+	 * state set.
+	 *
+	 * @return the size in bytes
+	 */
+	public long getTableBytes() {
+		return mTableBytes;
+	}
+
+	/**
+	 * Gets the total time spent building the matcher, including
+	 * determinization.
+	 *
+	 * @return the time in nanoseconds
+	 */
+	public long getBuildNanos() {
+		return mBuildNanos;
+	}
+
+	@Override
+	public String toString() {
+		return "BuildReport[nfaStates=" + mNfaStates +
+				", dfaStates=" + mDfaStates +
+				", determinizeNanos=" + mDeterminizeNanos +
+				", tableBytes=" + mTableBytes +
+				", buildNanos=" + mBuildNanos + "]";
+	}
+}
@@ -1,16 +1,19 @@
 package com.chalcodes.automata;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.BitSet;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-
-import static com.chalcodes.automata.AbstractByteMatcher.NO_TRANSITION;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Produces table-based byte matchers.
@@ -18,53 +21,472 @@ import static com.chalcodes.automata.AbstractByteMatcher.NO_TRANSITION;
  * @author Kevin Krumwiede
  */
 public class ByteMatchers {
+	private static final List<BuildListener> gBuildListeners = new CopyOnWriteArrayList<>();
+
+	/**
+	 * Adds a listener that receives a report for every matcher built by this
+	 * class.
+	 *
+	 * @param listener the listener
+	 */
+	public static void addBuildListener(@Nonnull final BuildListener listener) {
+		gBuildListeners.add(listener);
+	}
+
+	public static void removeBuildListener(@Nonnull final BuildListener listener) {
+		gBuildListeners.remove(listener);
+	}
 
 	public static <T> SingleSemanticsByteMatcher<T> singleSemantics(@Nonnull final Automaton<Byte,T> automaton) {
 		automaton.checkCannibalized();
+		final long start = System.nanoTime();
+		final int nfaStates = automaton.stateCount();
 		automaton.determinize();
-		final Map<State<Byte,T>, Integer> stateIds = automaton.getStateIds();
-		final int[][] transitions = getTransitionTable(stateIds);
-		final BitSet accepting = getAccepting(stateIds);
-		final List<T> semanticValues = getSingleSemanticValues(stateIds);
-		return new SingleSemanticsByteMatcher<>(transitions, accepting, semanticValues);
+		final long determinizeNanos = System.nanoTime() - start;
+		return report(buildSingleSemantics(automaton, false), nfaStates, determinizeNanos, start);
+	}
+
+	/**
+	 * Creates a single semantics matcher for an automaton whose accepting
+	 * states may have several semantic values.  Conflicts are resolved when
+	 * the automaton is determinized, so matching is as fast as for any other
+	 * single semantics matcher.
+	 *
+	 * @param automaton the automaton
+	 * @param priority orders semantic values from highest to lowest priority
+	 * @param <T> the type of semantic values
+	 * @return the matcher
+	 * @see Automaton#determinize(Comparator)
+	 */
+	public static <T> SingleSemanticsByteMatcher<T> singleSemantics(@Nonnull final Automaton<Byte,T> automaton,
+																	@Nonnull final Comparator<? super T> priority) {
+		automaton.checkCannibalized();
+		final long start = System.nanoTime();
+		final int nfaStates = automaton.stateCount();
+		automaton.determinize(priority);
+		final long determinizeNanos = System.nanoTime() - start;
+		return report(buildSingleSemantics(automaton, false), nfaStates, determinizeNanos, start);
 	}
 
 	public static <T> MultipleSemanticsByteMatcher<T> multipleSemantics(@Nonnull final Automaton<Byte,T> automaton) {
 		automaton.checkCannibalized();
+		final long start = System.nanoTime();
+		final int nfaStates = automaton.stateCount();
 		automaton.determinize();
-		final Map<State<Byte,T>, Integer> stateIds = automaton.getStateIds();
-		final int[][] transitions = getTransitionTable(stateIds);
+		final long determinizeNanos = System.nanoTime() - start;
+		return report(buildMultipleSemantics(automaton, false), nfaStates, determinizeNanos, start);
+	}
+
+	/**
+	 * Creates a matcher for a set of rules whose union may be too large to
+	 * determinize.  The whole set is determinized if the DFA fits within the
+	 * state budget.  Otherwise the set is split in half, and each half is
+	 * split again until every group fits.  The DFAs of the groups are
+	 * stepped together in one pass over the input.  The rules are not
+	 * modified.
+	 * <p>
+	 * A single rule is determinized on its own whatever its size, since it
+	 * cannot be split.
+	 *
+	 * @param rules the rules
+	 * @param semanticValues the semantic values of the rules
+	 * @param priority orders semantic values from highest to lowest priority
+	 * @param maxStates the most states the DFA of each group may have
+	 * @param <T> the type of semantic values
+	 * @return the matcher
+	 * @throws IllegalArgumentException if the lists have different sizes or
+	 * are empty, or if {@code maxStates} is less than 1
+	 * @see Automaton#tryDeterminize(int)
+	 */
+	public static <T> PartitionedByteMatcher<T> partitioned(@Nonnull final List<Automaton<Byte,T>> rules,
+															@Nonnull final List<T> semanticValues,
+															@Nonnull final Comparator<? super T> priority,
+															final int maxStates) {
+		if(rules.size() != semanticValues.size()) {
+			throw new IllegalArgumentException("rules.size() != semanticValues.size()");
+		}
+		if(rules.isEmpty()) {
+			throw new IllegalArgumentException("no rules");
+		}
+		if(maxStates < 1) {
+			throw new IllegalArgumentException("maxStates < 1");
+		}
+		final List<SingleSemanticsByteMatcher<T>> groups = new ArrayList<>();
+		partition(rules, semanticValues, priority, maxStates, 0, rules.size(), groups);
+		return new PartitionedByteMatcher<>(groups, priority);
+	}
+
+	/**
+	 * Builds a matcher for a range of rules, or splits the range if its DFA
+	 * would exceed the budget.
+	 */
+	private static <T> void partition(@Nonnull final List<Automaton<Byte,T>> rules,
+									  @Nonnull final List<T> semanticValues,
+									  @Nonnull final Comparator<? super T> priority,
+									  final int maxStates,
+									  final int from,
+									  final int to,
+									  @Nonnull final List<SingleSemanticsByteMatcher<T>> groups) {
+		final List<Automaton<Byte,T>> copies = new ArrayList<>(to - from);
+		for(int i = from; i < to; ++i) {
+			copies.add(rules.get(i).copy());
+		}
+		final Automaton<Byte,T> union = Automatons.unionAll(copies, semanticValues.subList(from, to));
+		final long start = System.nanoTime();
+		final int nfaStates = union.stateCount();
+		if(to - from > 1 && !union.tryDeterminize(maxStates)) {
+			final int middle = (from + to) >>> 1;
+			partition(rules, semanticValues, priority, maxStates, from, middle, groups);
+			partition(rules, semanticValues, priority, maxStates, middle, to, groups);
+			return;
+		}
+		union.determinize(priority);
+		final long determinizeNanos = System.nanoTime() - start;
+		groups.add(report(buildSingleSemantics(union, false), nfaStates, determinizeNanos, start));
+	}
+
+	/**
+	 * Creates a matcher that reports the offsets of the capture groups of
+	 * the longest match.  The groups are carried through determinization as
+	 * tags, so captures are found in the same linear pass as the match.  The
+	 * automaton is not modified.  It should not have been determinized,
+	 * which discards its groups.
+	 *
+	 * @param automaton the automaton
+	 * @param <T> the type of semantic values
+	 * @return the matcher
+	 * @throws IllegalArgumentException if an accepting state would have
+	 * multiple semantic values
+	 * @see Automaton#capture(int)
+	 */
+	public static <T> CapturingByteMatcher<T> capturing(@Nonnull final Automaton<Byte,T> automaton) {
+		return new CapturingByteMatcher<>(TaggedDfa.compile(automaton));
+	}
+
+	/**
+	 * Creates a matcher for the current contents of a dictionary builder.  The
+	 * table is built directly from the minimal automaton held by the builder.
+	 * The builder remains usable, and later additions do not affect the
+	 * matcher.
+	 *
+	 * @param dictionary the dictionary builder
+	 * @param <T> the type of semantic values
+	 * @return a matcher for the words in the dictionary
+	 */
+	public static <T> SingleSemanticsByteMatcher<T> singleSemantics(@Nonnull final DictionaryBuilder<T> dictionary) {
+		final long start = System.nanoTime();
+		final SingleSemanticsByteMatcher<T> matcher = dictionary.buildMatcher();
+		return report(matcher, matcher.stateCount(), 0, start);
+	}
+
+	/**
+	 * Creates a matcher that scans backward from the limit of a buffer toward
+	 * its position, finding the longest suffix of the buffer in the language
+	 * of the automaton.  The automaton is copied and the copy is reversed, so
+	 * the original remains usable.
+	 * <p>
+	 * To find the span of an unanchored match, search forward with a matcher
+	 * for the language prefixed by any input to find where the match ends,
+	 * then set the buffer limit there and match backward with a matcher
+	 * created by this method to find where it begins.
+	 *
+	 * @param automaton the automaton
+	 * @param <T> the type of semantic values
+	 * @return a backward-scanning matcher
+	 */
+	public static <T> SingleSemanticsByteMatcher<T> singleSemanticsBackward(@Nonnull final Automaton<Byte,T> automaton) {
+		final long start = System.nanoTime();
+		final Automaton<Byte,T> reversed = automaton.copy().reverse();
+		final int nfaStates = reversed.stateCount();
+		reversed.determinize();
+		final long determinizeNanos = System.nanoTime() - start;
+		return report(buildSingleSemantics(reversed, true), nfaStates, determinizeNanos, start);
+	}
+
+	/**
+	 * Creates a matcher that scans backward from the limit of a buffer toward
+	 * its position.  The automaton is copied and the copy is reversed, so the
+	 * original remains usable.
+	 *
+	 * @param automaton the automaton
+	 * @param <T> the type of semantic values
+	 * @return a backward-scanning matcher
+	 * @see #singleSemanticsBackward(Automaton)
+	 */
+	public static <T> MultipleSemanticsByteMatcher<T> multipleSemanticsBackward(@Nonnull final Automaton<Byte,T> automaton) {
+		final long start = System.nanoTime();
+		final Automaton<Byte,T> reversed = automaton.copy().reverse();
+		final int nfaStates = reversed.stateCount();
+		reversed.determinize();
+		final long determinizeNanos = System.nanoTime() - start;
+		return report(buildMultipleSemantics(reversed, true), nfaStates, determinizeNanos, start);
+	}
+
+	/**
+	 * Creates a matcher that simulates the automaton as a bit-parallel NFA
+	 * instead of determinizing it.  The automaton is not modified.  Matching
+	 * costs more per byte than a DFA matcher, but never requires subset
+	 * construction.  Compilation builds a bit set of following positions for
+	 * each position, so it takes time and space proportional to the square
+	 * of the number of positions divided by 64.  There is at most one more
+	 * position than there are transitions.
+	 *
+	 * <p>
+	 * Several accepting positions may be active at the end of a match.  If
+	 * they have different semantic values, {@link
+	 * SingleSemanticsNfaByteMatcher#semanticValue()} throws, as the DFA
+	 * matcher would have failed to determinize a state with both.  Use
+	 * {@link #singleSemanticsNfa(Automaton, Comparator)} to choose among them
+	 * instead.
+	 *
+	 * @param automaton the automaton
+	 * @param <T> the type of semantic values
+	 * @return an NFA matcher
+	 * @throws IllegalArgumentException if a state has multiple semantic
+	 * values
+	 */
+	public static <T> SingleSemanticsNfaByteMatcher<T> singleSemanticsNfa(@Nonnull final Automaton<Byte,T> automaton) {
+		return new SingleSemanticsNfaByteMatcher<>(BitParallelNfa.compile(automaton, true), null);
+	}
+
+	/**
+	 * Creates a matcher that simulates the automaton as a bit-parallel NFA
+	 * instead of determinizing it.  When the active accepting positions at
+	 * the end of a match have different semantic values, the first in the
+	 * order of the comparator wins.  The automaton is not modified.
+	 *
+	 * @param automaton the automaton
+	 * @param priority orders semantic values from highest to lowest priority
+	 * @param <T> the type of semantic values
+	 * @return an NFA matcher
+	 * @see #singleSemantics(Automaton, Comparator)
+	 */
+	public static <T> SingleSemanticsNfaByteMatcher<T> singleSemanticsNfa(@Nonnull final Automaton<Byte,T> automaton,
+																		  @Nonnull final Comparator<? super T> priority) {
+		return new SingleSemanticsNfaByteMatcher<>(BitParallelNfa.compile(automaton, false), priority);
+	}
+
+	/**
+	 * Creates a matcher that simulates the automaton as a bit-parallel NFA
+	 * instead of determinizing it.  The automaton is not modified.
+	 *
+	 * @param automaton the automaton
+	 * @param <T> the type of semantic values
+	 * @return an NFA matcher
+	 * @see #singleSemanticsNfa(Automaton)
+	 */
+	public static <T> MultipleSemanticsNfaByteMatcher<T> multipleSemanticsNfa(@Nonnull final Automaton<Byte,T> automaton) {
+		return new MultipleSemanticsNfaByteMatcher<>(BitParallelNfa.compile(automaton, false));
+	}
+
+	/**
+	 * Creates a copy of a matcher with its states renumbered for locality.
+	 * With a profile, the most visited states come first, so the rows used by
+	 * the step loop on typical input are packed together.  Without one, or
+	 * among states with equal visits, states are numbered in depth-first
+	 * order from the initial state, so each path through the table occupies
+	 * consecutive rows.  Rows are allocated in the new order.  The initial
+	 * state remains state 0.  The copy shares the counters of the matcher
+	 * and has the same match mode.
+	 *
+	 * @param matcher the matcher
+	 * @param profile a profile of the matcher, or null
+	 * @param <T> the type of semantic values
+	 * @return the renumbered matcher
+	 * @throws IllegalArgumentException if the profile is not of this matcher
+	 */
+	public static <T> SingleSemanticsByteMatcher<T> renumber(@Nonnull final SingleSemanticsByteMatcher<T> matcher,
+															 @Nullable final StateProfile profile) {
+		final int[] newIds = getRenumbering(matcher, profile);
+		final SingleSemanticsByteMatcher<T> renumbered = new SingleSemanticsByteMatcher<>(
+				renumber(matcher.transitions(), newIds),
+				renumber(matcher.accepting(), newIds),
+				renumber(matcher.semanticValueList(), newIds),
+				matcher.isBackward());
+		if(matcher.getBuildReport() != null) {
+			renumbered.setBuildReport(matcher.getBuildReport());
+		}
+		renumbered.setCounters(matcher.getCounters());
+		renumbered.setMatchMode(matcher.getMatchMode());
+		return renumbered;
+	}
+
+	/**
+	 * Creates a copy of a matcher with its states renumbered for locality.
+	 *
+	 * @param matcher the matcher
+	 * @param profile a profile of the matcher, or null
+	 * @param <T> the type of semantic values
+	 * @return the renumbered matcher
+	 * @throws IllegalArgumentException if the profile is not of this matcher
+	 * @see #renumber(SingleSemanticsByteMatcher, StateProfile)
+	 */
+	public static <T> MultipleSemanticsByteMatcher<T> renumber(@Nonnull final MultipleSemanticsByteMatcher<T> matcher,
+															   @Nullable final StateProfile profile) {
+		final int[] newIds = getRenumbering(matcher, profile);
+		final MultipleSemanticsByteMatcher<T> renumbered = new MultipleSemanticsByteMatcher<>(
+				renumber(matcher.transitions(), newIds),
+				renumber(matcher.accepting(), newIds),
+				renumber(matcher.semanticValueList(), newIds),
+				matcher.isBackward());
+		if(matcher.getBuildReport() != null) {
+			renumbered.setBuildReport(matcher.getBuildReport());
+		}
+		renumbered.setCounters(matcher.getCounters());
+		renumbered.setMatchMode(matcher.getMatchMode());
+		return renumbered;
+	}
+
+	/**
+	 * Maps each old state number to a new one.
+	 */
+	private static int[] getRenumbering(@Nonnull final AbstractByteMatcher matcher,
+										@Nullable final StateProfile profile) {
+		final ByteTable table = matcher.transitions();
+		if(profile != null && !profile.isFor(table)) {
+			throw new IllegalArgumentException("profile is not of this matcher");
+		}
+		/* Depth-first preorder, taking lower bytes first. */
+		final int[] depthFirst = new int[table.stateCount()];
+		final int[] inputs = new int[256];
+		final int[] targets = new int[256];
+		Arrays.fill(depthFirst, -1);
+		final Deque<Integer> stack = new ArrayDeque<>();
+		stack.push(0);
+		int rank = 0;
+		while(!stack.isEmpty()) {
+			final int state = stack.pop();
+			if(depthFirst[state] != -1) {
+				continue;
+			}
+			depthFirst[state] = rank++;
+			for(int i = table.getRow(state, inputs, targets) - 1; i >= 0; --i) {
+				if(depthFirst[targets[i]] == -1) {
+					stack.push(targets[i]);
+				}
+			}
+		}
+		for(int state = 0; state < depthFirst.length; ++state) {
+			if(depthFirst[state] == -1) {
+				depthFirst[state] = rank++;
+			}
+		}
+		final Integer[] order = new Integer[table.stateCount()];
+		for(int state = 0; state < order.length; ++state) {
+			order[state] = state;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(final Integer a, final Integer b) {
+				/* The initial state stays first. */
+				if(a == 0 || b == 0) {
+					return a == 0 ? (b == 0 ? 0 : -1) : 1;
+				}
+				if(profile != null) {
+					final int byVisits = Long.compare(profile.visits(b), profile.visits(a));
+					if(byVisits != 0) {
+						return byVisits;
+					}
+				}
+				return Integer.compare(depthFirst[a], depthFirst[b]);
+			}
+		});
+		final int[] newIds = new int[order.length];
+		for(int i = 0; i < order.length; ++i) {
+			newIds[order[i]] = i;
+		}
+		return newIds;
+	}
+
+	private static ByteTable renumber(@Nonnull final ByteTable table, @Nonnull final int[] newIds) {
+		final ByteTable.Builder renumbered = new ByteTable.Builder(newIds.length);
+		final int[] inputs = new int[256];
+		final int[] targets = new int[256];
+		for(int state = 0; state < newIds.length; ++state) {
+			final int count = table.getRow(state, inputs, targets);
+			for(int i = 0; i < count; ++i) {
+				renumbered.add(newIds[state], inputs[i], newIds[targets[i]]);
+			}
+		}
+		return renumbered.build();
+	}
+
+	private static BitSet renumber(@Nonnull final BitSet accepting, @Nonnull final int[] newIds) {
+		final BitSet renumbered = new BitSet(newIds.length);
+		for(int state = accepting.nextSetBit(0); state >= 0; state = accepting.nextSetBit(state + 1)) {
+			renumbered.set(newIds[state]);
+		}
+		return renumbered;
+	}
+
+	private static <E> List<E> renumber(@Nonnull final List<E> list, @Nonnull final int[] newIds) {
+		final List<E> renumbered = new ArrayList<>(Collections.nCopies(list.size(), (E) null));
+		for(int state = 0; state < newIds.length; ++state) {
+			renumbered.set(newIds[state], list.get(state));
+		}
+		return renumbered;
+	}
+
+	/**
+	 * Attaches a build report to a new matcher and notifies the listeners.
+	 */
+	private static <M extends AbstractByteMatcher> M report(@Nonnull final M matcher,
+															final int nfaStates,
+															final long determinizeNanos,
+															final long start) {
+		final BuildReport report = new BuildReport(nfaStates,
+				matcher.stateCount(),
+				determinizeNanos,
+				matcher.tableBytes(),
+				System.nanoTime() - start);
+		matcher.setBuildReport(report);
+		for(final BuildListener listener : gBuildListeners) {
+			listener.built(matcher, report);
+		}
+		return matcher;
+	}
+
+	private static <T> SingleSemanticsByteMatcher<T> buildSingleSemantics(@Nonnull final Automaton<Byte,T> dfa,
+																		  final boolean backward) {
+		final Map<State<Byte,T>, Integer> stateIds = dfa.getStateIds();
+		final ByteTable transitions = getTransitionTable(stateIds);
+		final BitSet accepting = getAccepting(stateIds);
+		final List<T> semanticValues = getSingleSemanticValues(stateIds);
+		return new SingleSemanticsByteMatcher<>(transitions, accepting, semanticValues, backward);
+	}
+
+	private static <T> MultipleSemanticsByteMatcher<T> buildMultipleSemantics(@Nonnull final Automaton<Byte,T> dfa,
+																			  final boolean backward) {
+		final Map<State<Byte,T>, Integer> stateIds = dfa.getStateIds();
+		final ByteTable transitions = getTransitionTable(stateIds);
 		final BitSet accepting = getAccepting(stateIds);
 		final List<Set<T>> semanticValues = getMultipleSemanticValues(stateIds);
-		return new MultipleSemanticsByteMatcher<>(transitions, accepting, semanticValues);
+		return new MultipleSemanticsByteMatcher<>(transitions, accepting, semanticValues, backward);
 	}
 
-	private static <T> int[][] getTransitionTable(@Nonnull final Map<State<Byte,T>, Integer> stateIds) {
-		final int[][] table = new int[stateIds.size()][];
+	private static <T> ByteTable getTransitionTable(@Nonnull final Map<State<Byte,T>, Integer> stateIds) {
+		final ByteTable.Builder table = new ByteTable.Builder(stateIds.size());
 		final Set<Byte> inputs = new HashSet<>();
 		final Set<State<Byte,T>> transitions = new HashSet<>();
 		for(final State<Byte,T> state : stateIds.keySet()) {
-			final int[] row = new int[256];
-			Arrays.fill(row, NO_TRANSITION);
+			final int id = stateIds.get(state);
 			state.getInputs(inputs);
 			for(final Byte b : inputs) {
 				state.getTransitions(b, transitions);
 				if(!transitions.isEmpty()) {
 					final State<Byte,T> transition = transitions.iterator().next();
-					final int i = 0xFF & b;
-					row[i] = stateIds.get(transition);
+					table.add(id, 0xFF & b, stateIds.get(transition));
 					transitions.clear();
 				}
 			}
 			inputs.clear();
-			table[stateIds.get(state)] = row;
 		}
-		return table;
+		return table.build();
 	}
 
-	private static <T> BitSet getAccepting(@Nonnull final Map<State<Byte,T>, Integer> stateIds) {
+	static <S,T> BitSet getAccepting(@Nonnull final Map<State<S,T>, Integer> stateIds) {
 		final BitSet accepting = new BitSet(stateIds.size());
-		for(final State<Byte,T> state : stateIds.keySet()) {
+		for(final State<S,T> state : stateIds.keySet()) {
 			if(state.isAccepting()) {
 				accepting.set(stateIds.get(state));
 			}
@@ -72,10 +494,10 @@ public class ByteMatchers {
 		return accepting;
 	}
 
-	private static <T> List<T> getSingleSemanticValues(@Nonnull final Map<State<Byte,T>, Integer> stateIds) {
+	static <S,T> List<T> getSingleSemanticValues(@Nonnull final Map<State<S,T>, Integer> stateIds) {
 		final List<T> semanticValues = new ArrayList<>(Collections.nCopies(stateIds.size(), (T) null));
 		final Set<T> set = new HashSet<>();
-		for(final State<Byte,T> state : stateIds.keySet()) {
+		for(final State<S,T> state : stateIds.keySet()) {
 			if(state.isAccepting()) {
 				set.clear();
 				state.getSemanticValues(set);
@@ -90,9 +512,9 @@ public class ByteMatchers {
 		return semanticValues;
 	}
 
-	private static <T> List<Set<T>> getMultipleSemanticValues(@Nonnull final Map<State<Byte,T>, Integer> stateIds) {
+	static <S,T> List<Set<T>> getMultipleSemanticValues(@Nonnull final Map<State<S,T>, Integer> stateIds) {
 		final List<Set<T>> semanticValues = new ArrayList<>(Collections.nCopies(stateIds.size(), (Set<T>) null));
-		for(final State<Byte,T> state : stateIds.keySet()) {
+		for(final State<S,T> state : stateIds.keySet()) {
 			if(state.isAccepting()) {
 				semanticValues.set(stateIds.get(state), state.getSemanticValues());
 			}
@@ -0,0 +1,196 @@
+package com.chalcodes.automata;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Copies a stream of bytes, replacing matches.  The input is split into
+ * longest matches as a lexer would split it.  Each match is passed to a
+ * {@link Replacement}, and bytes that are not part of a replaced match are
+ * written straight from the input buffer in runs, without being copied.
+ * Memory is bounded by the size of the input buffer, so streams of any
+ * length can be processed.
+ * <p>
+ * A replacer is not thread safe.
+ *
+ * @param <T> the type of semantic value associated with accepting states
+ * @author Kevin Krumwiede
+ */
+public class ByteReplacer<T> {
+	/**
+	 * Chooses the replacement for a match.
+	 *
+	 * @param <T> the type of semantic value associated with accepting states
+	 */
+	public interface Replacement<T> {
+		/**
+		 * Gets the bytes that replace a match.  The remaining bytes of the
+		 * returned buffer are written, then its position is restored.
+		 *
+		 * @param semanticValue the semantic value of the match
+		 * @param match the input buffer, with its position and limit set to
+		 * the match; the buffer must not be modified or retained
+		 * @return the replacement, or null to keep the match
+		 */
+		@Nullable ByteBuffer replace(@Nullable T semanticValue, @Nonnull ByteBuffer match);
+	}
+
+	private final SingleSemanticsByteMatcher<T> mMatcher;
+	private final Replacement<T> mReplacement;
+
+	/**
+	 * Creates a replacer.  The matcher is copied.
+	 *
+	 * @param matcher the matcher
+	 * @param replacement chooses the replacement for each match
+	 * @throws IllegalArgumentException if the matcher scans backward
+	 */
+	public ByteReplacer(@Nonnull final SingleSemanticsByteMatcher<T> matcher,
+						@Nonnull final Replacement<T> replacement) {
+		if(matcher.isBackward()) {
+			throw new IllegalArgumentException("backward matcher");
+		}
+		mMatcher = matcher.copy();
+		mReplacement = replacement;
+	}
+
+	/**
+	 * Creates a replacement that replaces matches of each semantic value
+	 * with fixed bytes.  Matches of other semantic values are kept.  The
+	 * replacement must not be shared between threads.
+	 *
+	 * @param replacements the replacement bytes of each semantic value
+	 * @param <T> the type of semantic values
+	 * @return the replacement
+	 */
+	public static <T> Replacement<T> forValues(@Nonnull final Map<T, byte[]> replacements) {
+		final Map<T, ByteBuffer> buffers = new HashMap<>();
+		for(final Map.Entry<T, byte[]> entry : replacements.entrySet()) {
+			buffers.put(entry.getKey(), ByteBuffer.wrap(entry.getValue().clone()));
+		}
+		return new Replacement<T>() {
+			@Nullable @Override
+			public ByteBuffer replace(@Nullable final T semanticValue, @Nonnull final ByteBuffer match) {
+				return buffers.get(semanticValue);
+			}
+		};
+	}
+
+	/**
+	 * Copies the remaining bytes of a buffer to a channel, replacing
+	 * matches.  The buffer is taken to be the end of the input.  Its
+	 * position and limit are not changed.
+	 *
+	 * @param in the input
+	 * @param out the output
+	 * @throws IOException if the output cannot be written
+	 */
+	public void replace(@Nonnull final ByteBuffer in, @Nonnull final WritableByteChannel out) throws IOException {
+		final int position = in.position();
+		final int limit = in.limit();
+		try {
+			replace(in, position, true, out);
+		}
+		finally {
+			in.limit(limit).position(position);
+		}
+	}
+
+	/**
+	 * Copies the rest of a channel to another channel, replacing matches.
+	 * Matches may span reads.  A match that would not fit in the buffer is
+	 * cut off where the buffer is full.
+	 *
+	 * @param in the input
+	 * @param out the output
+	 * @param buffer the buffer to read into
+	 * @throws IOException if the input cannot be read or the output cannot
+	 * be written
+	 */
+	public void replace(@Nonnull final ReadableByteChannel in,
+						@Nonnull final WritableByteChannel out,
+						@Nonnull final ByteBuffer buffer) throws IOException {
+		buffer.clear();
+		boolean eof = false;
+		while(!eof || buffer.position() > 0) {
+			if(!eof) {
+				eof = in.read(buffer) < 0;
+			}
+			buffer.flip();
+			final int limit = buffer.limit();
+			final int position = replace(buffer, 0, eof, out);
+			buffer.limit(limit).position(position);
+			buffer.compact();
+		}
+	}
+
+	/**
+	 * Replaces matches from an index up to the limit of a buffer.  Every byte
+	 * before the returned index has been written.  The position and limit of
+	 * the buffer are changed.
+	 *
+	 * @return the index of the first byte not written, which begins a match
+	 * that may continue past the limit unless {@code eof} is true
+	 */
+	private int replace(@Nonnull final ByteBuffer buffer,
+						final int start,
+						final boolean eof,
+						@Nonnull final WritableByteChannel out) throws IOException {
+		final int limit = buffer.limit();
+		int position = start;
+		/* The start of the run of bytes to be copied through. */
+		int copy = start;
+		while(position < limit) {
+			/* Wait for more input unless the buffer is already full. */
+			final int length = mMatcher.longestMatchAt(buffer, position,
+					eof || (position == start && limit == buffer.capacity()));
+			if(length == AbstractByteMatcher.NEED_INPUT) {
+				break;
+			}
+			if(length == 0) {
+				++position;
+				continue;
+			}
+			final T semanticValue = mMatcher.semanticValue();
+			buffer.limit(position + length).position(position);
+			final ByteBuffer replacement = mReplacement.replace(semanticValue, buffer);
+			buffer.limit(limit);
+			if(replacement != null) {
+				write(buffer, copy, position, out);
+				buffer.limit(limit);
+				final int replacementPosition = replacement.position();
+				try {
+					while(replacement.hasRemaining()) {
+						out.write(replacement);
+					}
+				}
+				finally {
+					replacement.position(replacementPosition);
+				}
+				copy = position + length;
+			}
+			position += length;
+		}
+		write(buffer, copy, position, out);
+		return position;
+	}
+
+	/**
+	 * Writes a run of bytes directly from the input buffer.
+	 */
+	private static void write(@Nonnull final ByteBuffer buffer,
+							  final int from,
+							  final int to,
+							  @Nonnull final WritableByteChannel out) throws IOException {
+		buffer.limit(to).position(from);
+		while(buffer.hasRemaining()) {
+			out.write(buffer);
+		}
+	}
+}
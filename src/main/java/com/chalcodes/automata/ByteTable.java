@@ -0,0 +1,214 @@
+package com.chalcodes.automata;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * The transition table of a byte matcher.  Tables are immutable and may be
+ * shared by any number of matchers.
+ *
+ * @author Kevin Krumwiede
+ * @see DenseByteTable
+ * @see PackedByteTable
+ */
+abstract class ByteTable {
+	static final int NO_TRANSITION = -1;
+	/**
+	 * Tables with a lower ratio of transitions to cells are packed.  A dense
+	 * lookup is one load fewer, so it wins unless most cells are empty.
+	 */
+	static final double PACKED_DENSITY = 0.125;
+	/** Tables with fewer states are never packed. */
+	static final int PACKED_MIN_STATES = 64;
+	/**
+	 * States that loop back to themselves on all but this many bytes can be
+	 * scanned a word at a time.
+	 */
+	static final int MAX_ACCELERATED_EXITS = 4;
+
+	private final BitSet mExits;
+	/** The exit patterns of each accelerated state, or null. */
+	private final long[][] mAccelerations;
+
+	ByteTable(@Nonnull final Builder builder) {
+		mExits = builder.getExits();
+		mAccelerations = builder.getAccelerations();
+	}
+
+	/**
+	 * Gets the transition from a state on an input.
+	 *
+	 * @param state the state
+	 * @param input the input, from 0 to 255
+	 * @return the next state, or {@link #NO_TRANSITION}
+	 */
+	abstract int next(int state, int input);
+
+	abstract int stateCount();
+
+	/**
+	 * Estimates the heap size of this table, assuming 16-byte array headers
+	 * and 4-byte references.
+	 *
+	 * @return the size in bytes
+	 */
+	abstract long bytes();
+
+	/**
+	 * Tests whether a state has any transitions.
+	 *
+	 * @param state the state
+	 * @return true if the state has transitions; otherwise false
+	 */
+	final boolean hasTransitions(final int state) {
+		return mExits.get(state);
+	}
+
+	/**
+	 * Gets the exit bytes of a state that loops back to itself on all but a
+	 * few bytes.  Each exit byte is repeated in all eight bytes of a word,
+	 * ready to be compared with eight bytes of input at once.
+	 *
+	 * @param state the state
+	 * @return the exit patterns, or null if the state is not accelerated
+	 */
+	@Nullable final long[] getAcceleration(final int state) {
+		return mAccelerations[state];
+	}
+
+	/**
+	 * Gets the transitions of a state in order of input.
+	 *
+	 * @param state the state
+	 * @param inputs receives the inputs; must have room for 256
+	 * @param targets receives the targets; must have room for 256
+	 * @return the number of transitions
+	 */
+	int getRow(final int state, @Nonnull final int[] inputs, @Nonnull final int[] targets) {
+		int count = 0;
+		for(int input = 0; input < 256; ++input) {
+			final int target = next(state, input);
+			if(target != NO_TRANSITION) {
+				inputs[count] = input;
+				targets[count] = target;
+				++count;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Collects the transitions of each state, then builds a dense or packed
+	 * table depending on how many cells would be empty.
+	 */
+	static final class Builder {
+		private final int[][] mInputs;
+		private final int[][] mTargets;
+		private final int[] mCounts;
+		private final boolean mAccelerate;
+		private long mTransitions;
+
+		Builder(final int states) {
+			this(states, true);
+		}
+
+		/**
+		 * Creates a builder.
+		 *
+		 * @param states the number of states
+		 * @param accelerate false if the targets are not states, so that no
+		 * state can be found to loop back to itself
+		 */
+		Builder(final int states, final boolean accelerate) {
+			mInputs = new int[states][];
+			mTargets = new int[states][];
+			mCounts = new int[states];
+			mAccelerate = accelerate;
+		}
+
+		Builder add(final int state, final int input, final int target) {
+			int[] inputs = mInputs[state];
+			if(inputs == null) {
+				inputs = new int[4];
+				mInputs[state] = inputs;
+				mTargets[state] = new int[4];
+			}
+			else if(mCounts[state] == inputs.length) {
+				inputs = Arrays.copyOf(inputs, inputs.length * 2);
+				mInputs[state] = inputs;
+				mTargets[state] = Arrays.copyOf(mTargets[state], inputs.length);
+			}
+			inputs[mCounts[state]] = input;
+			mTargets[state][mCounts[state]] = target;
+			++mCounts[state];
+			++mTransitions;
+			return this;
+		}
+
+		int stateCount() {
+			return mCounts.length;
+		}
+
+		int count(final int state) {
+			return mCounts[state];
+		}
+
+		int input(final int state, final int i) {
+			return mInputs[state][i];
+		}
+
+		int target(final int state, final int i) {
+			return mTargets[state][i];
+		}
+
+		BitSet getExits() {
+			final BitSet exits = new BitSet(mCounts.length);
+			for(int state = 0; state < mCounts.length; ++state) {
+				if(mCounts[state] > 0) {
+					exits.set(state);
+				}
+			}
+			return exits;
+		}
+
+		long[][] getAccelerations() {
+			final long[][] accelerations = new long[mCounts.length][];
+			if(!mAccelerate) {
+				return accelerations;
+			}
+			final BitSet loops = new BitSet(256);
+			for(int state = 0; state < mCounts.length; ++state) {
+				for(int i = 0; i < mCounts[state]; ++i) {
+					if(mTargets[state][i] == state) {
+						loops.set(mInputs[state][i]);
+					}
+				}
+				final int exits = 256 - loops.cardinality();
+				if(exits <= MAX_ACCELERATED_EXITS) {
+					final long[] patterns = new long[exits];
+					int i = 0;
+					for(int b = loops.nextClearBit(0); b < 256; b = loops.nextClearBit(b + 1)) {
+						patterns[i++] = (b & 0xFFL) * 0x0101010101010101L;
+					}
+					accelerations[state] = patterns;
+				}
+				loops.clear();
+			}
+			return accelerations;
+		}
+
+		/**
+		 * Builds a packed table if the density is below
+		 * {@link #PACKED_DENSITY}; otherwise a dense table.
+		 */
+		@Nonnull ByteTable build() {
+			final int states = mCounts.length;
+			if(states >= PACKED_MIN_STATES && mTransitions < PACKED_DENSITY * states * 256) {
+				return new PackedByteTable(this);
+			}
+			return new DenseByteTable(this);
+		}
+	}
+}
@@ -0,0 +1,144 @@
+package com.chalcodes.automata;
+
+import javax.annotation.Nonnull;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A byte matcher that reports the offsets of capture groups in the longest
+ * match.  Offsets are relative to the position of the buffer.  Group 0 is
+ * the whole match.
+ *
+ * @param <T> the type of semantic value associated with accepting states
+ * @author Kevin Krumwiede
+ * @see ByteMatchers#capturing(Automaton)
+ * @see Automaton#capture(int)
+ */
+public class CapturingByteMatcher<T> implements ByteMatcher, SingleSemantics<T> {
+	private static final int INITIAL = 0;
+	private static final int NO_MATCH = -1;
+	private final TaggedDfa<T> mDfa;
+	private int[] mRegisters;
+	private int[] mNext;
+	/** The offset of each tag in the longest match, or -1. */
+	private final int[] mCaptures;
+	private int mState = INITIAL;
+	private int mMatch = NO_MATCH;
+	private int mLength;
+
+	CapturingByteMatcher(@Nonnull final TaggedDfa<T> dfa) {
+		mDfa = dfa;
+		mRegisters = new int[dfa.mRegisters];
+		mNext = new int[dfa.mRegisters];
+		mCaptures = new int[dfa.mTags];
+	}
+
+	public CapturingByteMatcher<T> copy() {
+		return new CapturingByteMatcher<>(mDfa);
+	}
+
+	@Override
+	public void reset() {
+		mState = INITIAL;
+		mMatch = NO_MATCH;
+		Arrays.fill(mRegisters, 0, mDfa.mInitialRegisters, 0);
+	}
+
+	/**
+	 * Gets the number of capture groups, not including group 0.
+	 *
+	 * @return the number of groups
+	 */
+	public int groupCount() {
+		return mDfa.mTags / 2;
+	}
+
+	@Override
+	public int length() {
+		if(mMatch == NO_MATCH) {
+			throw new IllegalStateException("no match");
+		}
+		return mLength;
+	}
+
+	/**
+	 * Gets the offset at which a group of the longest match begins.
+	 *
+	 * @param group the group number
+	 * @return the offset, or -1 if the group did not participate in the match
+	 * @throws IllegalStateException if there is no match
+	 * @throws IndexOutOfBoundsException if there is no such group
+	 */
+	public int start(final int group) {
+		length();
+		if(group == 0) {
+			return 0;
+		}
+		return mCaptures[2 * (group - 1)];
+	}
+
+	/**
+	 * Gets the offset at which a group of the longest match ends.
+	 *
+	 * @param group the group number
+	 * @return the offset, or -1 if the group did not participate in the match
+	 * @throws IllegalStateException if there is no match
+	 * @throws IndexOutOfBoundsException if there is no such group
+	 */
+	public int end(final int group) {
+		length();
+		if(group == 0) {
+			return mLength;
+		}
+		return mCaptures[2 * (group - 1) + 1];
+	}
+
+	@Override
+	public T semanticValue() {
+		length();
+		return mDfa.mSemanticValues.get(mMatch);
+	}
+
+	@Override
+	public boolean matches(@Nonnull final ByteBuffer buffer) {
+		reset();
+		int consumed = 0;
+		checkMatch(consumed);
+		final int remaining = buffer.remaining();
+		final int position = buffer.position();
+		while(consumed < remaining) {
+			final int edge = mDfa.mTransitions.next(mState, buffer.get(position + consumed) & 0xFF);
+			if(edge == ByteTable.NO_TRANSITION) {
+				break;
+			}
+			++consumed;
+			/* The operation is a parallel assignment, so it writes to a
+			 * second set of registers. */
+			final int[] ops = mDfa.mEdgeOps[edge];
+			for(int i = 0; i < ops.length; ++i) {
+				mNext[i] = ops[i] == TaggedDfa.OFFSET ? consumed : mRegisters[ops[i]];
+			}
+			final int[] swap = mRegisters;
+			mRegisters = mNext;
+			mNext = swap;
+			mState = mDfa.mEdgeTargets[edge];
+			checkMatch(consumed);
+		}
+		if(consumed == remaining && mDfa.mTransitions.hasTransitions(mState)) {
+			throw new BufferUnderflowException();
+		}
+		return mMatch != NO_MATCH;
+	}
+
+	private void checkMatch(final int len) {
+		if(mDfa.mAccepting.get(mState)) {
+			mMatch = mState;
+			mLength = len;
+			final int[] tags = mDfa.mFinalTags[mState];
+			for(int tag = 0; tag < tags.length; ++tag) {
+				mCaptures[tag] = tags[tag] == TaggedDfa.UNSET ? -1 : mRegisters[tags[tag]];
+			}
+		}
+	}
+}
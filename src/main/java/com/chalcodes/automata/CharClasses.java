@@ -0,0 +1,75 @@
+package com.chalcodes.automata;
+
+import javax.annotation.Nonnull;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Maps the 64K UTF-16 code units to a small number of equivalence classes
+ * with a two-level table.  The high byte of a code unit selects a block of
+ * 256 class IDs, and identical blocks are stored once, so a typical
+ * automaton needs only a few kilobytes for the whole alphabet.
+ *
+ * @author Kevin Krumwiede
+ */
+final class CharClasses {
+	private final int[] mBlocks;
+	private final char[] mClasses;
+	private final int mCount;
+
+	/**
+	 * Creates a class table.
+	 *
+	 * @param classes the class ID of every code unit
+	 * @param count the number of classes
+	 */
+	CharClasses(@Nonnull final char[] classes, final int count) {
+		assert classes.length == 0x10000;
+		mBlocks = new int[256];
+		final Map<Block, Integer> offsets = new HashMap<>();
+		final char[] packed = new char[0x10000];
+		int length = 0;
+		for(int high = 0; high < 256; ++high) {
+			final Block block = new Block(Arrays.copyOfRange(classes, high << 8, (high + 1) << 8));
+			Integer offset = offsets.get(block);
+			if(offset == null) {
+				offset = length;
+				System.arraycopy(block.mClasses, 0, packed, length, 256);
+				length += 256;
+				offsets.put(block, offset);
+			}
+			mBlocks[high] = offset;
+		}
+		mClasses = Arrays.copyOf(packed, length);
+		mCount = count;
+	}
+
+	int classOf(final char c) {
+		return mClasses[mBlocks[c >>> 8] + (c & 0xFF)];
+	}
+
+	int count() {
+		return mCount;
+	}
+
+	private static class Block {
+		final char[] mClasses;
+		private final int mHash;
+
+		Block(@Nonnull final char[] classes) {
+			mClasses = classes;
+			mHash = Arrays.hashCode(classes);
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			return obj instanceof Block && Arrays.equals(mClasses, ((Block) obj).mClasses);
+		}
+
+		@Override
+		public int hashCode() {
+			return mHash;
+		}
+	}
+}
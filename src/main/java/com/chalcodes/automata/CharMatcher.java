@@ -0,0 +1,23 @@
+package com.chalcodes.automata;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Matches UTF-16 character sequences without encoding them to bytes.  The
+ * end of the input ends the match.
+ *
+ * @author Kevin Krumwiede
+ */
+public interface CharMatcher {
+	void reset();
+	int length();
+
+	/**
+	 * Finds the longest match starting at an index of a character sequence.
+	 *
+	 * @param input the characters
+	 * @param start the index of the first character
+	 * @return true if there is a match; otherwise false
+	 */
+	boolean matches(@Nonnull CharSequence input, int start);
+}
@@ -0,0 +1,116 @@
+package com.chalcodes.automata;
+
+import javax.annotation.Nonnull;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.chalcodes.automata.AbstractCharMatcher.NO_TRANSITION;
+
+/**
+ * Produces table-based char matchers.  Code units that have the same
+ * transition from every state share a class, so the table has one column per
+ * class instead of one per code unit.
+ *
+ * @author Kevin Krumwiede
+ */
+public class CharMatchers {
+	private CharMatchers() {}
+
+	public static <T> SingleSemanticsCharMatcher<T> singleSemantics(@Nonnull final Automaton<Character,T> automaton) {
+		automaton.checkCannibalized();
+		automaton.determinize();
+		final Map<State<Character,T>, Integer> stateIds = automaton.getStateIds();
+		final CharClasses classes = getClasses(stateIds);
+		final int[] transitions = getTransitionTable(stateIds, classes);
+		final BitSet accepting = ByteMatchers.getAccepting(stateIds);
+		final List<T> semanticValues = ByteMatchers.getSingleSemanticValues(stateIds);
+		return new SingleSemanticsCharMatcher<>(classes, transitions, accepting, semanticValues);
+	}
+
+	public static <T> MultipleSemanticsCharMatcher<T> multipleSemantics(@Nonnull final Automaton<Character,T> automaton) {
+		automaton.checkCannibalized();
+		automaton.determinize();
+		final Map<State<Character,T>, Integer> stateIds = automaton.getStateIds();
+		final CharClasses classes = getClasses(stateIds);
+		final int[] transitions = getTransitionTable(stateIds, classes);
+		final BitSet accepting = ByteMatchers.getAccepting(stateIds);
+		final List<Set<T>> semanticValues = ByteMatchers.getMultipleSemanticValues(stateIds);
+		return new MultipleSemanticsCharMatcher<>(classes, transitions, accepting, semanticValues);
+	}
+
+	/**
+	 * Partitions the code units by their columns in the transition table.
+	 * Code units without transitions are class 0.  The partition is refined
+	 * one state at a time: code units in the same class that the state sends
+	 * to different targets, or that only some of them have a transition
+	 * for, are split apart.  No column is ever built, so the cost is
+	 * proportional to the number of transitions.
+	 *
+	 * @throws IllegalArgumentException if there are too many classes for a
+	 * {@code char} class ID
+	 */
+	private static <T> CharClasses getClasses(@Nonnull final Map<State<Character,T>, Integer> stateIds) {
+		final int[] ids = new int[0x10000];
+		int nextId = 1;
+		final Set<Character> inputs = new HashSet<>();
+		final Map<Long, Integer> splits = new HashMap<>();
+		for(final State<Character,T> state : stateIds.keySet()) {
+			state.getInputs(inputs);
+			for(final Character input : inputs) {
+				final State<Character,T> transition = state.getTransition(input);
+				if(transition != null) {
+					final Long key = ((long) ids[input] << 32) | stateIds.get(transition);
+					Integer id = splits.get(key);
+					if(id == null) {
+						id = nextId++;
+						splits.put(key, id);
+					}
+					ids[input] = id;
+				}
+			}
+			inputs.clear();
+			splits.clear();
+		}
+		/* Number the classes densely. */
+		final char[] classes = new char[0x10000];
+		final Map<Integer, Integer> dense = new HashMap<>();
+		dense.put(0, 0);
+		for(int c = 0; c < 0x10000; ++c) {
+			Integer id = dense.get(ids[c]);
+			if(id == null) {
+				id = dense.size();
+				if(id > Character.MAX_VALUE) {
+					throw new IllegalArgumentException("too many classes");
+				}
+				dense.put(ids[c], id);
+			}
+			classes[c] = (char) id.intValue();
+		}
+		return new CharClasses(classes, dense.size());
+	}
+
+	private static <T> int[] getTransitionTable(@Nonnull final Map<State<Character,T>, Integer> stateIds,
+												@Nonnull final CharClasses classes) {
+		final int stride = classes.count();
+		final int[] table = new int[stateIds.size() * stride];
+		Arrays.fill(table, NO_TRANSITION);
+		final Set<Character> inputs = new HashSet<>();
+		for(final State<Character,T> state : stateIds.keySet()) {
+			final int row = stateIds.get(state) * stride;
+			state.getInputs(inputs);
+			for(final Character input : inputs) {
+				final State<Character,T> transition = state.getTransition(input);
+				if(transition != null) {
+					table[row + classes.classOf(input)] = stateIds.get(transition);
+				}
+			}
+			inputs.clear();
+		}
+		return table;
+	}
+}
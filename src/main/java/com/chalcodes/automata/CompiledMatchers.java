@@ -0,0 +1,144 @@
+package com.chalcodes.automata;
+
+import javax.annotation.Nonnull;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Saves and loads the tables of byte matchers.  A matcher can be built when
+ * a project is built and packaged as a resource, so an application starts
+ * without parsing or determinizing anything.
+ *
+ * @author Kevin Krumwiede
+ */
+public class CompiledMatchers {
+	private CompiledMatchers() {}
+
+	private static final int MAGIC = 0x41555441; // "AUTA"
+	private static final int VERSION = 1;
+	/** The most states a compiled matcher may have.  A larger count in a
+	 * stream is taken to be corrupt rather than allocated. */
+	private static final int MAX_STATES = 1 << 22;
+
+	/**
+	 * Writes the tables of a matcher.  The stream is not closed.
+	 *
+	 * @param matcher the matcher
+	 * @param out the stream
+	 * @throws IOException if the stream cannot be written
+	 * @throws IllegalArgumentException if the matcher has more than
+	 * 4,194,304 states
+	 */
+	public static void write(@Nonnull final SingleSemanticsByteMatcher<String> matcher,
+							 @Nonnull final OutputStream out) throws IOException {
+		final ByteTable table = matcher.transitions();
+		if(table.stateCount() > MAX_STATES) {
+			throw new IllegalArgumentException("too many states");
+		}
+		final DataOutputStream data = new DataOutputStream(out);
+		final BitSet accepting = matcher.accepting();
+		final List<String> semanticValues = matcher.semanticValueList();
+		final int[] inputs = new int[256];
+		final int[] targets = new int[256];
+		data.writeInt(MAGIC);
+		data.writeShort(VERSION);
+		data.writeBoolean(matcher.isBackward());
+		data.writeInt(table.stateCount());
+		for(int state = 0; state < table.stateCount(); ++state) {
+			final int count = table.getRow(state, inputs, targets);
+			data.writeShort(count);
+			for(int i = 0; i < count; ++i) {
+				data.writeByte(inputs[i]);
+				data.writeInt(targets[i]);
+			}
+			data.writeBoolean(accepting.get(state));
+			final String semanticValue = semanticValues.get(state);
+			data.writeBoolean(semanticValue != null);
+			if(semanticValue != null) {
+				data.writeUTF(semanticValue);
+			}
+		}
+		data.flush();
+	}
+
+	/**
+	 * Reads the tables written by {@link #write(SingleSemanticsByteMatcher,
+	 * OutputStream)}.  The stream is not closed.
+	 *
+	 * @param in the stream
+	 * @return the matcher
+	 * @throws IOException if the stream cannot be read or does not contain
+	 * a compiled matcher
+	 */
+	public static SingleSemanticsByteMatcher<String> read(@Nonnull final InputStream in) throws IOException {
+		final DataInputStream data = new DataInputStream(in);
+		if(data.readInt() != MAGIC) {
+			throw new IOException("not a compiled matcher");
+		}
+		final int version = data.readUnsignedShort();
+		if(version != VERSION) {
+			throw new IOException("unsupported version " + version);
+		}
+		final boolean backward = data.readBoolean();
+		final int states = data.readInt();
+		if(states < 1 || states > MAX_STATES) {
+			throw new IOException("bad state count");
+		}
+		final ByteTable.Builder table = new ByteTable.Builder(states);
+		final BitSet accepting = new BitSet(states);
+		final List<String> semanticValues = new ArrayList<>(Collections.nCopies(states, (String) null));
+		for(int state = 0; state < states; ++state) {
+			final int count = data.readUnsignedShort();
+			if(count > 256) {
+				throw new IOException("bad transition count");
+			}
+			for(int i = 0; i < count; ++i) {
+				final int input = data.readUnsignedByte();
+				final int target = data.readInt();
+				if(target < 0 || target >= states) {
+					throw new IOException("bad transition");
+				}
+				table.add(state, input, target);
+			}
+			if(data.readBoolean()) {
+				accepting.set(state);
+			}
+			if(data.readBoolean()) {
+				semanticValues.set(state, data.readUTF());
+			}
+		}
+		return new SingleSemanticsByteMatcher<>(table.build(), accepting, semanticValues, backward);
+	}
+
+	/**
+	 * Loads a compiled matcher packaged as a resource.
+	 *
+	 * @param loader the class loader
+	 * @param name the resource name
+	 * @return the matcher
+	 * @throws FileNotFoundException if there is no such resource
+	 * @throws IOException if the resource cannot be read
+	 */
+	public static SingleSemanticsByteMatcher<String> load(@Nonnull final ClassLoader loader,
+														  @Nonnull final String name) throws IOException {
+		final InputStream in = loader.getResourceAsStream(name);
+		if(in == null) {
+			throw new FileNotFoundException(name);
+		}
+		try {
+			return read(new BufferedInputStream(in));
+		}
+		finally {
+			in.close();
+		}
+	}
+}
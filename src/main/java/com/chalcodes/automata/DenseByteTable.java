@@ -0,0 +1,43 @@
+package com.chalcodes.automata;
+
+import javax.annotation.Nonnull;
+import java.util.Arrays;
+
+/**
+ * A transition table with a full row of 256 entries for every state.
+ *
+ * @author Kevin Krumwiede
+ */
+final class DenseByteTable extends ByteTable {
+	private final int[][] mRows;
+
+	DenseByteTable(@Nonnull final Builder builder) {
+		super(builder);
+		mRows = new int[builder.stateCount()][];
+		/* Rows are allocated in state order, so neighboring states are
+		 * usually neighbors in the heap. */
+		for(int state = 0; state < mRows.length; ++state) {
+			final int[] row = new int[256];
+			Arrays.fill(row, NO_TRANSITION);
+			for(int i = 0; i < builder.count(state); ++i) {
+				row[builder.input(state, i)] = builder.target(state, i);
+			}
+			mRows[state] = row;
+		}
+	}
+
+	@Override
+	int next(final int state, final int input) {
+		return mRows[state][input];
+	}
+
+	@Override
+	int stateCount() {
+		return mRows.length;
+	}
+
+	@Override
+	long bytes() {
+		return 16 + 4L * mRows.length + (16 + 4L * 256) * mRows.length;
+	}
+}
@@ -0,0 +1,360 @@
+package com.chalcodes.automata;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * Builds a minimal acyclic deterministic automaton that maps words to
+ * semantic values.  The automaton is kept minimal as each word is added, so
+ * memory is proportional to the size of the minimal automaton rather than to
+ * the total length of the words.  Words may be added in any order, and more
+ * words may be added after an automaton or matcher has been built.
+ * <p>
+ * The algorithm is the incremental construction for unsorted data described
+ * by Daciuk, Mihov, Watson and Watson in "Incremental Construction of Minimal
+ * Acyclic Finite-State Automata" (2000).  Equivalent states are shared
+ * through a register keyed by finality, semantic value and outgoing
+ * transitions.  Shared states along the path of a new word are cloned before
+ * they are modified.
+ *
+ * @param <T> the type of semantic value associated with words
+ * @author Kevin Krumwiede
+ */
+public class DictionaryBuilder<T> {
+	private final Node<T> mRoot = new Node<>();
+	/** Maps every state except the root to itself. */
+	private final Map<Node<T>, Node<T>> mRegister = new HashMap<>();
+	private int mSize;
+
+	/**
+	 * Adds a word.  If the word is already present, its semantic value is
+	 * replaced.  The position of the buffer is not changed.
+	 *
+	 * @param word the word
+	 * @param semanticValue the semantic value
+	 * @return this builder
+	 */
+	public DictionaryBuilder<T> add(@Nonnull final ByteBuffer word, @Nonnull final T semanticValue) {
+		final byte[] bytes = new byte[word.remaining()];
+		word.duplicate().get(bytes);
+		return add(bytes, semanticValue);
+	}
+
+	/**
+	 * Adds a word.  If the word is already present, its semantic value is
+	 * replaced.
+	 *
+	 * @param word the word
+	 * @param semanticValue the semantic value
+	 * @return this builder
+	 */
+	public DictionaryBuilder<T> add(@Nonnull final byte[] word, @Nonnull final T semanticValue) {
+		//noinspection ConstantConditions - public API
+		if(semanticValue == null) {
+			throw new NullPointerException();
+		}
+		final Node<T> existing = find(word);
+		if(existing != null && existing.mFinal && existing.mSemanticValue.equals(semanticValue)) {
+			return this;
+		}
+		@SuppressWarnings({"unchecked", "rawtypes"})
+		final Node<T>[] path = new Node[word.length + 1];
+		path[0] = mRoot;
+		/* Follow the common prefix, taking every state on it out of the
+		 * register and cloning shared states, since all of them will change. */
+		int i = 0;
+		Node<T> node = mRoot;
+		while(i < word.length) {
+			final int label = word[i] & 0xFF;
+			Node<T> next = node.get(label);
+			if(next == null) {
+				break;
+			}
+			if(next.mInDegree > 1) {
+				/* Cloning a state makes all of its targets shared, so the
+				 * rest of the prefix is cloned too. */
+				--next.mInDegree;
+				next = next.copy();
+				node.set(label, next);
+			}
+			else {
+				mRegister.remove(next);
+			}
+			path[++i] = next;
+			node = next;
+		}
+		/* Append the suffix. */
+		while(i < word.length) {
+			final Node<T> next = new Node<>();
+			next.mInDegree = 1;
+			node.set(word[i] & 0xFF, next);
+			path[++i] = next;
+			node = next;
+		}
+		if(!node.mFinal) {
+			++mSize;
+		}
+		node.mFinal = true;
+		node.mSemanticValue = semanticValue;
+		/* Working back toward the root, replace each state on the path with
+		 * an equivalent registered state, or register it. */
+		for(int j = word.length; j > 0; --j) {
+			final Node<T> state = path[j];
+			final Node<T> equivalent = mRegister.get(state);
+			if(equivalent == null) {
+				mRegister.put(state, state);
+			}
+			else {
+				path[j - 1].set(word[j - 1] & 0xFF, equivalent);
+				++equivalent.mInDegree;
+				state.release();
+			}
+		}
+		return this;
+	}
+
+	/**
+	 * Gets the semantic value of a word.  The position of the buffer is not
+	 * changed.
+	 *
+	 * @param word the word
+	 * @return the semantic value, or null if the word is not present
+	 */
+	@Nullable public T get(@Nonnull final ByteBuffer word) {
+		Node<T> node = mRoot;
+		for(int i = word.position(); i < word.limit() && node != null; ++i) {
+			node = node.get(word.get(i) & 0xFF);
+		}
+		return node != null && node.mFinal ? node.mSemanticValue : null;
+	}
+
+	@Nullable private Node<T> find(@Nonnull final byte[] word) {
+		Node<T> node = mRoot;
+		for(int i = 0; i < word.length && node != null; ++i) {
+			node = node.get(word[i] & 0xFF);
+		}
+		return node;
+	}
+
+	/**
+	 * Gets the number of words.
+	 *
+	 * @return the number of words
+	 */
+	public int size() {
+		return mSize;
+	}
+
+	/**
+	 * Gets the number of states in the minimal automaton.
+	 *
+	 * @return the number of states
+	 */
+	public int stateCount() {
+		return mRegister.size() + 1;
+	}
+
+	/**
+	 * Creates an automaton equivalent to the current contents of this
+	 * builder.  The automaton is deterministic and independent of this
+	 * builder.
+	 *
+	 * @return the automaton
+	 */
+	public Automaton<Byte,T> toAutomaton() {
+		final List<Node<T>> nodes = getNodes();
+		final Map<Node<T>, State<Byte,T>> states = new IdentityHashMap<>();
+		for(final Node<T> node : nodes) {
+			states.put(node, new State<Byte,T>());
+		}
+		for(final Node<T> node : nodes) {
+			final State<Byte,T> state = states.get(node);
+			for(int i = 0; i < node.mLabels.length; ++i) {
+				state.addTransition(node.mLabels[i], states.get(node.mTargets[i]));
+			}
+			if(node.mFinal) {
+				state.setAccepting(true);
+				state.addSemanticValue(node.mSemanticValue);
+			}
+		}
+		return new Automaton<>(states.get(mRoot), true);
+	}
+
+	/**
+	 * Builds the transition table of a matcher directly from the nodes,
+	 * without creating an intermediate automaton.
+	 */
+	SingleSemanticsByteMatcher<T> buildMatcher() {
+		final List<Node<T>> nodes = getNodes();
+		final Map<Node<T>, Integer> ids = new IdentityHashMap<>();
+		for(final Node<T> node : nodes) {
+			ids.put(node, ids.size());
+		}
+		final ByteTable.Builder transitions = new ByteTable.Builder(nodes.size());
+		final BitSet accepting = new BitSet(nodes.size());
+		final List<T> semanticValues = new ArrayList<>(Collections.nCopies(nodes.size(), (T) null));
+		for(int id = 0; id < nodes.size(); ++id) {
+			final Node<T> node = nodes.get(id);
+			for(int i = 0; i < node.mLabels.length; ++i) {
+				transitions.add(id, node.mLabels[i] & 0xFF, ids.get(node.mTargets[i]));
+			}
+			if(node.mFinal) {
+				accepting.set(id);
+				semanticValues.set(id, node.mSemanticValue);
+			}
+		}
+		return new SingleSemanticsByteMatcher<>(transitions.build(), accepting, semanticValues, false);
+	}
+
+	/**
+	 * Lists the reachable nodes in breadth-first order, starting with the
+	 * root.
+	 */
+	private List<Node<T>> getNodes() {
+		final List<Node<T>> nodes = new ArrayList<>(mRegister.size() + 1);
+		final Map<Node<T>, Boolean> seen = new IdentityHashMap<>();
+		final Queue<Node<T>> queue = new LinkedList<>();
+		seen.put(mRoot, Boolean.TRUE);
+		queue.add(mRoot);
+		while(!queue.isEmpty()) {
+			final Node<T> node = queue.remove();
+			nodes.add(node);
+			for(final Node<T> target : node.mTargets) {
+				if(seen.put(target, Boolean.TRUE) == null) {
+					queue.add(target);
+				}
+			}
+		}
+		return nodes;
+	}
+
+	/**
+	 * A state of the dictionary automaton.  Transitions are stored in two
+	 * parallel arrays sorted by unsigned label.  Equality is structural, with
+	 * targets compared by identity, so equal nodes have equal right
+	 * languages once their targets are minimal.
+	 */
+	private static class Node<T> {
+		private static final byte[] NO_LABELS = new byte[0];
+		private static final Node<?>[] NO_TARGETS = new Node<?>[0];
+
+		@Nonnull byte[] mLabels = NO_LABELS;
+		@SuppressWarnings("unchecked")
+		@Nonnull Node<T>[] mTargets = (Node<T>[]) NO_TARGETS;
+		boolean mFinal;
+		@Nullable T mSemanticValue;
+		int mInDegree;
+
+		private int indexOf(final int label) {
+			int low = 0;
+			int high = mLabels.length - 1;
+			while(low <= high) {
+				final int mid = (low + high) >>> 1;
+				final int midLabel = mLabels[mid] & 0xFF;
+				if(midLabel < label) {
+					low = mid + 1;
+				}
+				else if(midLabel > label) {
+					high = mid - 1;
+				}
+				else {
+					return mid;
+				}
+			}
+			return -(low + 1);
+		}
+
+		@Nullable Node<T> get(final int label) {
+			final int i = indexOf(label);
+			return i < 0 ? null : mTargets[i];
+		}
+
+		void set(final int label, @Nonnull final Node<T> target) {
+			final int i = indexOf(label);
+			if(i >= 0) {
+				mTargets[i] = target;
+			}
+			else {
+				final int insert = -(i + 1);
+				final int length = mLabels.length;
+				final byte[] labels = new byte[length + 1];
+				final Node<T>[] targets = Arrays.copyOf(mTargets, length + 1);
+				System.arraycopy(mLabels, 0, labels, 0, insert);
+				System.arraycopy(mLabels, insert, labels, insert + 1, length - insert);
+				System.arraycopy(mTargets, insert, targets, insert + 1, length - insert);
+				labels[insert] = (byte) label;
+				targets[insert] = target;
+				mLabels = labels;
+				mTargets = targets;
+			}
+		}
+
+		/**
+		 * Creates an unshared copy of this node.  The targets gain an
+		 * incoming transition from the copy.
+		 */
+		@Nonnull Node<T> copy() {
+			final Node<T> copy = new Node<>();
+			copy.mLabels = mLabels.clone();
+			copy.mTargets = mTargets.clone();
+			copy.mFinal = mFinal;
+			copy.mSemanticValue = mSemanticValue;
+			copy.mInDegree = 1;
+			for(final Node<T> target : mTargets) {
+				++target.mInDegree;
+			}
+			return copy;
+		}
+
+		/**
+		 * Discards this node, removing its incoming transitions from its
+		 * targets.
+		 */
+		void release() {
+			for(final Node<T> target : mTargets) {
+				--target.mInDegree;
+			}
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			if(!(obj instanceof Node)) {
+				return false;
+			}
+			final Node<?> other = (Node<?>) obj;
+			if(mFinal != other.mFinal || !Arrays.equals(mLabels, other.mLabels)) {
+				return false;
+			}
+			if(mFinal && !mSemanticValue.equals(other.mSemanticValue)) {
+				return false;
+			}
+			for(int i = 0; i < mTargets.length; ++i) {
+				if(mTargets[i] != other.mTargets[i]) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		@Override
+		public int hashCode() {
+			int hash = mFinal ? mSemanticValue.hashCode() : 0;
+			hash = 31 * hash + Arrays.hashCode(mLabels);
+			for(final Node<T> target : mTargets) {
+				hash = 31 * hash + System.identityHashCode(target);
+			}
+			return hash;
+		}
+	}
+}
@@ -0,0 +1,355 @@
+package com.chalcodes.automata;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.TreeMap;
+
+/**
+ * Splits a document into tokens and keeps the tokens up to date as the
+ * document is edited.  The document is split into longest matches as a
+ * lexer would split it.  A byte at which no match of at least one byte
+ * begins becomes a token of one byte without a semantic value.  Offsets
+ * are relative to the position of the document buffer.
+ * <p>
+ * Every token begins in the initial state of the matcher, so each token
+ * boundary is a checkpoint.  For each token, the scanner records how far
+ * the matcher looked ahead to decide where the token ends.  After an edit,
+ * scanning resumes at the first token that looked at any edited byte, and
+ * stops as soon as a new token begins where an old token began after the
+ * edit, since the rest of the old tokens cannot have changed.
+ * <p>
+ * The tokens are kept in a gap buffer whose gap follows the last edit.
+ * Offsets of the tokens after the gap are stored relative to the end of the
+ * document, so an edit changes none of them.  The cost of an edit is
+ * proportional to the size of the edit, the tokens around it, and the
+ * number of tokens between it and the edit before it, not to the size of
+ * the document.
+ * <p>
+ * A scanner is not thread safe.
+ *
+ * @param <T> the type of semantic value associated with accepting states
+ * @author Kevin Krumwiede
+ */
+public class IncrementalScanner<T> {
+	private static final int NO_MATCH = -1;
+	private static final int INITIAL_CAPACITY = 16;
+	private final SingleSemanticsByteMatcher<T> mMatcher;
+	/* Tokens before the gap have absolute offsets.  Tokens after it have
+	 * offsets relative to the end of the document. */
+	private int[] mStarts = new int[INITIAL_CAPACITY];
+	private int[] mLengths = new int[INITIAL_CAPACITY];
+	/** The end of the bytes examined for each token, or
+	 * {@link AbstractByteMatcher#THROUGH_LIMIT} if the token was scanned up
+	 * to the end of the document. */
+	private int[] mExamined = new int[INITIAL_CAPACITY];
+	private int[] mStates = new int[INITIAL_CAPACITY];
+	/** The index of the first slot of the gap. */
+	private int mGap;
+	/** The index of the first slot after the gap. */
+	private int mGapEnd = INITIAL_CAPACITY;
+	/** The length of the document. */
+	private int mLength;
+	/** The number of tokens that examined each number of bytes, counted
+	 * from the start of the token, except tokens scanned through the end. */
+	private final TreeMap<Integer, Integer> mReaches = new TreeMap<>();
+	/** The number of tokens scanned through the end of the document at each
+	 * distance from the end.  An edit before such a token does not change
+	 * its distance, and an edit after it rescans it.  A token rescanned at
+	 * the same distance is counted before the old token is removed. */
+	private final TreeMap<Integer, Integer> mThrough = new TreeMap<>();
+
+	/**
+	 * Creates a scanner with no document.  The matcher is copied.
+	 *
+	 * @param matcher the matcher
+	 * @throws IllegalArgumentException if the matcher scans backward
+	 */
+	public IncrementalScanner(@Nonnull final SingleSemanticsByteMatcher<T> matcher) {
+		if(matcher.isBackward()) {
+			throw new IllegalArgumentException("backward matcher");
+		}
+		mMatcher = matcher.copy();
+	}
+
+	/**
+	 * Splits a new document into tokens, discarding the tokens of any
+	 * previous document.  The position of the buffer is not changed.
+	 *
+	 * @param document the document
+	 * @return the number of tokens
+	 */
+	public int scan(@Nonnull final ByteBuffer document) {
+		mGap = 0;
+		mGapEnd = mStarts.length;
+		mLength = 0;
+		mReaches.clear();
+		mThrough.clear();
+		return edit(document, 0, 0, document.remaining());
+	}
+
+	/**
+	 * Updates the tokens after an edit that replaced a range of bytes of the
+	 * document with new bytes.  The position of the buffer is not changed.
+	 *
+	 * @param document the document after the edit
+	 * @param offset the offset of the edit
+	 * @param removed the number of bytes removed
+	 * @param inserted the number of bytes inserted
+	 * @return the number of tokens scanned
+	 * @throws IllegalArgumentException if the edit is outside the previous
+	 * document, or the length of the document does not agree with the edit
+	 */
+	public int edit(@Nonnull final ByteBuffer document,
+					final int offset,
+					final int removed,
+					final int inserted) {
+		if(offset < 0 || removed < 0 || inserted < 0 || offset > mLength - removed) {
+			throw new IllegalArgumentException("edit out of bounds");
+		}
+		final int length = mLength - removed + inserted;
+		if(document.remaining() != length) {
+			throw new IllegalArgumentException("document length does not agree with edit");
+		}
+		moveGap(firstAffected(offset));
+		/* The old tokens after the gap keep their offsets from the end, so
+		 * adding the new length gives their offsets after the edit. */
+		int position = mGapEnd < mStarts.length ? mStarts[mGapEnd] + mLength : mLength;
+		mLength = length;
+		final int base = document.position();
+		int scanned = 0;
+		while(position < length) {
+			/* Old tokens that begin before the next new token are gone.  Old
+			 * tokens in or before the edit always fall behind. */
+			while(mGapEnd < mStarts.length && mStarts[mGapEnd] + length < position) {
+				removeOld();
+			}
+			if(position >= offset + inserted && mGapEnd < mStarts.length && mStarts[mGapEnd] + length == position) {
+				break;
+			}
+			final int matched = mMatcher.longestMatchAt(document, base + position, true);
+			final int examined = mMatcher.examined();
+			final int tokenLength = matched > 0 ? matched : 1;
+			if(mGap == mGapEnd) {
+				grow();
+			}
+			mStarts[mGap] = position;
+			mLengths[mGap] = tokenLength;
+			mStates[mGap] = matched > 0 ? mMatcher.matchState() : NO_MATCH;
+			if(examined == AbstractByteMatcher.THROUGH_LIMIT) {
+				mExamined[mGap] = AbstractByteMatcher.THROUGH_LIMIT;
+				addCount(mThrough, length - position);
+			}
+			else {
+				final int reach = Math.max(examined, tokenLength);
+				mExamined[mGap] = position + reach;
+				addCount(mReaches, reach);
+			}
+			++mGap;
+			++scanned;
+			position += tokenLength;
+		}
+		if(position >= length) {
+			while(mGapEnd < mStarts.length) {
+				removeOld();
+			}
+		}
+		return scanned;
+	}
+
+	/**
+	 * Finds the first token that examined any byte at or after an offset.
+	 */
+	private int firstAffected(final int offset) {
+		/* The last token that begins at or before the offset. */
+		int low = 0;
+		int high = tokenCount() - 1;
+		while(low <= high) {
+			final int middle = (low + high) >>> 1;
+			if(startAt(middle) <= offset) {
+				low = middle + 1;
+			}
+			else {
+				high = middle - 1;
+			}
+		}
+		int first = low;
+		/* No token that begins further back than the longest reach could
+		 * have examined the offset, unless it was scanned through the end. */
+		final int maxReach = mReaches.isEmpty() ? 0 : mReaches.lastKey();
+		for(int i = low - 1; i >= 0 && startAt(i) + maxReach > offset; --i) {
+			if(examinedAt(i) > offset) {
+				first = i;
+			}
+		}
+		if(!mThrough.isEmpty() && mLength - mThrough.lastKey() <= offset) {
+			first = Math.min(first, indexOf(mLength - mThrough.lastKey()));
+		}
+		return first;
+	}
+
+	/**
+	 * Finds the token that begins at an offset.
+	 */
+	private int indexOf(final int start) {
+		int low = 0;
+		int high = tokenCount() - 1;
+		while(low < high) {
+			final int middle = (low + high) >>> 1;
+			if(startAt(middle) < start) {
+				low = middle + 1;
+			}
+			else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Moves the gap so that it follows a number of tokens.
+	 */
+	private void moveGap(final int index) {
+		while(mGap > index) {
+			--mGap;
+			--mGapEnd;
+			mStarts[mGapEnd] = mStarts[mGap] - mLength;
+			mLengths[mGapEnd] = mLengths[mGap];
+			mExamined[mGapEnd] = mExamined[mGap] == AbstractByteMatcher.THROUGH_LIMIT ?
+					AbstractByteMatcher.THROUGH_LIMIT : mExamined[mGap] - mLength;
+			mStates[mGapEnd] = mStates[mGap];
+		}
+		while(mGap < index) {
+			mStarts[mGap] = mStarts[mGapEnd] + mLength;
+			mLengths[mGap] = mLengths[mGapEnd];
+			mExamined[mGap] = mExamined[mGapEnd] == AbstractByteMatcher.THROUGH_LIMIT ?
+					AbstractByteMatcher.THROUGH_LIMIT : mExamined[mGapEnd] + mLength;
+			mStates[mGap] = mStates[mGapEnd];
+			++mGap;
+			++mGapEnd;
+		}
+	}
+
+	/**
+	 * Discards the first old token after the gap.
+	 */
+	private void removeOld() {
+		if(mExamined[mGapEnd] == AbstractByteMatcher.THROUGH_LIMIT) {
+			removeCount(mThrough, -mStarts[mGapEnd]);
+		}
+		else {
+			removeCount(mReaches, mExamined[mGapEnd] - mStarts[mGapEnd]);
+		}
+		++mGapEnd;
+	}
+
+	private static void addCount(@Nonnull final TreeMap<Integer, Integer> counts, final int key) {
+		final Integer count = counts.get(key);
+		counts.put(key, count == null ? 1 : count + 1);
+	}
+
+	private static void removeCount(@Nonnull final TreeMap<Integer, Integer> counts, final int key) {
+		final int count = counts.get(key);
+		if(count == 1) {
+			counts.remove(key);
+		}
+		else {
+			counts.put(key, count - 1);
+		}
+	}
+
+	private void grow() {
+		final int capacity = mStarts.length * 2;
+		final int tail = mStarts.length - mGapEnd;
+		mStarts = grow(mStarts, capacity, tail);
+		mLengths = grow(mLengths, capacity, tail);
+		mExamined = grow(mExamined, capacity, tail);
+		mStates = grow(mStates, capacity, tail);
+		mGapEnd = capacity - tail;
+	}
+
+	private static int[] grow(@Nonnull final int[] array, final int capacity, final int tail) {
+		final int[] grown = Arrays.copyOf(array, capacity);
+		System.arraycopy(array, array.length - tail, grown, capacity - tail, tail);
+		return grown;
+	}
+
+	private int slot(final int token) {
+		return token < mGap ? token : token + mGapEnd - mGap;
+	}
+
+	private int startAt(final int token) {
+		return token < mGap ? mStarts[token] : mStarts[slot(token)] + mLength;
+	}
+
+	private int examinedAt(final int token) {
+		final int examined = mExamined[slot(token)];
+		return token < mGap || examined == AbstractByteMatcher.THROUGH_LIMIT ? examined : examined + mLength;
+	}
+
+	/**
+	 * Gets the number of tokens.
+	 *
+	 * @return the number of tokens
+	 */
+	public int tokenCount() {
+		return mGap + mStarts.length - mGapEnd;
+	}
+
+	/**
+	 * Gets the offset of a token.
+	 *
+	 * @param token the index of the token
+	 * @return the offset of the token
+	 * @throws IndexOutOfBoundsException if there is no such token
+	 */
+	public int start(final int token) {
+		checkToken(token);
+		return startAt(token);
+	}
+
+	/**
+	 * Gets the length of a token.
+	 *
+	 * @param token the index of the token
+	 * @return the length of the token
+	 * @throws IndexOutOfBoundsException if there is no such token
+	 */
+	public int length(final int token) {
+		checkToken(token);
+		return mLengths[slot(token)];
+	}
+
+	/**
+	 * Gets the semantic value of a token.
+	 *
+	 * @param token the index of the token
+	 * @return the semantic value, or null if the token is an unmatched byte
+	 * or a match without a semantic value
+	 * @throws IndexOutOfBoundsException if there is no such token
+	 */
+	@Nullable public T semanticValue(final int token) {
+		checkToken(token);
+		final int state = mStates[slot(token)];
+		return state == NO_MATCH ? null : mMatcher.semanticValueList().get(state);
+	}
+
+	/**
+	 * Tests whether a token is a match, as opposed to an unmatched byte.
+	 *
+	 * @param token the index of the token
+	 * @return true if the token is a match; otherwise false
+	 * @throws IndexOutOfBoundsException if there is no such token
+	 */
+	public boolean isMatch(final int token) {
+		checkToken(token);
+		return mStates[slot(token)] != NO_MATCH;
+	}
+
+	private void checkToken(final int token) {
+		if(token < 0 || token >= tokenCount()) {
+			throw new IndexOutOfBoundsException(String.valueOf(token));
+		}
+	}
+}
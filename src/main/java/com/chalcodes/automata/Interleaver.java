@@ -0,0 +1,160 @@
+package com.chalcodes.automata;
+
+import javax.annotation.Nonnull;
+import java.nio.ByteBuffer;
+import java.util.BitSet;
+
+/**
+ * Steps several messages through the tables of a forward matcher at once.
+ * With one message, each step waits for the table load of the step before
+ * it, so a large table that does not fit in cache is bound by memory
+ * latency.  The steps of different messages are independent, so taking one
+ * step of each in turn lets their loads overlap.  When a message finishes,
+ * its lane is refilled with the next message.
+ * <p>
+ * An interleaver is not thread safe.
+ *
+ * @author Kevin Krumwiede
+ */
+final class Interleaver {
+	private static final int INITIAL = 0;
+	private static final int NO_MATCH = -1;
+	private static final int IDLE = -1;
+
+	/** Supplies the messages of a batch. */
+	interface Messages {
+		@Nonnull ByteBuffer buffer(int index);
+		int start(int index);
+		int end(int index);
+	}
+
+	private final ByteTable mTransitions;
+	private final BitSet mAccepting;
+	private final BitSet mHopeless;
+	private final MatchMode mMode;
+	/** The index of the message in each lane, or {@link #IDLE}. */
+	private final int[] mIndex;
+	private final ByteBuffer[] mBuffers;
+	private final int[] mStart;
+	private final int[] mPosition;
+	private final int[] mEnd;
+	private final int[] mState;
+	private final int[] mMatchState;
+	private final int[] mMatchEnd;
+
+	Interleaver(@Nonnull final AbstractByteMatcher matcher, final int lanes) {
+		if(matcher.isBackward()) {
+			throw new IllegalArgumentException("backward matcher");
+		}
+		mTransitions = matcher.transitions();
+		mAccepting = matcher.accepting();
+		mHopeless = matcher.hopeless();
+		mMode = matcher.getMatchMode();
+		mIndex = new int[lanes];
+		mBuffers = new ByteBuffer[lanes];
+		mStart = new int[lanes];
+		mPosition = new int[lanes];
+		mEnd = new int[lanes];
+		mState = new int[lanes];
+		mMatchState = new int[lanes];
+		mMatchEnd = new int[lanes];
+	}
+
+	/**
+	 * Matches a range of messages as {@link AbstractByteMatcher#matchMessage}
+	 * would, writing the length of each match or -1, and the id of the
+	 * accepting state of each match or {@code noId}.
+	 */
+	void match(@Nonnull final Messages messages,
+			   final int from,
+			   final int to,
+			   @Nonnull final int[] lengths,
+			   @Nonnull final int[] ids,
+			   @Nonnull final int[] idsByState,
+			   final int noId) {
+		final int lanes = mIndex.length;
+		int next = from;
+		int active = 0;
+		for(int lane = 0; lane < lanes; ++lane) {
+			if(next < to) {
+				load(lane, messages, next++);
+				++active;
+			}
+			else {
+				mIndex[lane] = IDLE;
+			}
+		}
+		while(active > 0) {
+			for(int lane = 0; lane < lanes; ++lane) {
+				if(mIndex[lane] == IDLE || step(lane)) {
+					continue;
+				}
+				final int index = mIndex[lane];
+				int matchState = mMatchState[lane];
+				if(mMode == MatchMode.FULL && mMatchEnd[lane] != mEnd[lane]) {
+					matchState = NO_MATCH;
+				}
+				if(matchState == NO_MATCH) {
+					lengths[index] = -1;
+					ids[index] = noId;
+				}
+				else {
+					lengths[index] = mMatchEnd[lane] - mStart[lane];
+					ids[index] = idsByState[matchState];
+				}
+				if(next < to) {
+					load(lane, messages, next++);
+				}
+				else {
+					mIndex[lane] = IDLE;
+					mBuffers[lane] = null;
+					--active;
+				}
+			}
+		}
+	}
+
+	private void load(final int lane, @Nonnull final Messages messages, final int index) {
+		mIndex[lane] = index;
+		mBuffers[lane] = messages.buffer(index);
+		mStart[lane] = messages.start(index);
+		mPosition[lane] = mStart[lane];
+		mEnd[lane] = messages.end(index);
+		mState[lane] = INITIAL;
+		if(mAccepting.get(INITIAL)) {
+			mMatchState[lane] = INITIAL;
+			mMatchEnd[lane] = mStart[lane];
+		}
+		else {
+			mMatchState[lane] = NO_MATCH;
+		}
+	}
+
+	/**
+	 * Takes one step in a lane.
+	 *
+	 * @return true if the lane may take another step; false if its message
+	 * is finished
+	 */
+	private boolean step(final int lane) {
+		final int position = mPosition[lane];
+		final int state = mState[lane];
+		if(position == mEnd[lane]) {
+			return false;
+		}
+		if(mMode == MatchMode.SHORTEST ? mMatchState[lane] != NO_MATCH : mHopeless.get(state)) {
+			return false;
+		}
+		final int next = mTransitions.next(state, mBuffers[lane].get(position) & 0xFF);
+		if(next == ByteTable.NO_TRANSITION) {
+			return false;
+		}
+		mState[lane] = next;
+		mPosition[lane] = position + 1;
+		if(mAccepting.get(next)) {
+			mMatchState[lane] = next;
+			mMatchEnd[lane] = position + 1;
+		}
+		return true;
+	}
+}
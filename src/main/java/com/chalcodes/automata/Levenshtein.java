@@ -0,0 +1,166 @@
+package com.chalcodes.automata;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+
+/**
+ * Builds deterministic Levenshtein automatons.  A position {@code (i, e)}
+ * means that the first {@code i} symbols of the word have been matched
+ * with {@code e} edits.  Each DFA state is a set of positions, found
+ * directly from the positions of the state before it without building an
+ * NFA.  Deletions are not followed eagerly.  Instead, a symbol may match a
+ * later symbol of the word at the cost of the symbols skipped, and a
+ * position accepts if the rest of the word can be deleted.  Positions that
+ * can do no better than another position of the same set are dropped,
+ * which keeps the number of states linear in the length of the word for a
+ * fixed distance.
+ * <p>
+ * Symbols that do not occur in the word all behave alike, so the target of
+ * each state for such symbols is found once and shared.
+ *
+ * @author Kevin Krumwiede
+ */
+final class Levenshtein {
+	private Levenshtein() {}
+
+	static <S,T> Automaton<S,T> build(@Nonnull final List<S> word,
+									  final int distance,
+									  @Nonnull final Collection<S> alphabet) {
+		if(distance < 0) {
+			throw new IllegalArgumentException("distance < 0");
+		}
+		final int length = word.size();
+		final Set<S> symbols = new LinkedHashSet<>(word);
+		final List<S> others = new ArrayList<>();
+		for(final S symbol : new LinkedHashSet<>(alphabet)) {
+			if(!symbols.contains(symbol)) {
+				others.add(symbol);
+			}
+		}
+		final Map<List<Integer>, State<S,T>> states = new HashMap<>();
+		final Queue<List<Integer>> queue = new LinkedList<>();
+		final List<Integer> init = Collections.singletonList(position(0, 0, distance));
+		states.put(init, new State<S,T>());
+		queue.add(init);
+		while(!queue.isEmpty()) {
+			final List<Integer> positions = queue.remove();
+			final State<S,T> state = states.get(positions);
+			for(final int position : positions) {
+				final int i = position / (distance + 1);
+				final int e = position % (distance + 1);
+				if(length - i + e <= distance) {
+					state.setAccepting(true);
+					break;
+				}
+			}
+			for(final S symbol : symbols) {
+				final State<S,T> target = target(step(positions, word, symbol, length, distance), states, queue);
+				if(target != null) {
+					state.addTransition(symbol, target);
+				}
+			}
+			if(!others.isEmpty()) {
+				/* No symbol of the word matches, so any other symbol will do. */
+				final State<S,T> target = target(step(positions, word, null, length, distance), states, queue);
+				if(target != null) {
+					for(final S symbol : others) {
+						state.addTransition(symbol, target);
+					}
+				}
+			}
+		}
+		return new Automaton<>(states.get(init), true);
+	}
+
+	private static int position(final int i, final int e, final int distance) {
+		return i * (distance + 1) + e;
+	}
+
+	@Nullable private static <S,T> State<S,T> target(@Nonnull final List<Integer> positions,
+													 @Nonnull final Map<List<Integer>, State<S,T>> states,
+													 @Nonnull final Queue<List<Integer>> queue) {
+		if(positions.isEmpty()) {
+			return null;
+		}
+		State<S,T> target = states.get(positions);
+		if(target == null) {
+			target = new State<>();
+			states.put(positions, target);
+			queue.add(positions);
+		}
+		return target;
+	}
+
+	/**
+	 * Finds the positions reached from a set of positions by a symbol.  A
+	 * null symbol matches no symbol of the word.
+	 */
+	private static <S> List<Integer> step(@Nonnull final List<Integer> positions,
+										  @Nonnull final List<S> word,
+										  @Nullable final S symbol,
+										  final int length,
+										  final int distance) {
+		final int[] next = new int[positions.size() * 3];
+		int count = 0;
+		for(final int position : positions) {
+			final int i = position / (distance + 1);
+			final int e = position % (distance + 1);
+			/* Match, after deleting as few symbols of the word as possible.
+			 * Matches after more deletions would be subsumed. */
+			for(int d = 0; symbol != null && d <= distance - e && i + d < length; ++d) {
+				if(symbol.equals(word.get(i + d))) {
+					next[count++] = position(i + d + 1, e + d, distance);
+					break;
+				}
+			}
+			if(e < distance) {
+				/* Insertion. */
+				next[count++] = position(i, e + 1, distance);
+				if(i < length) {
+					/* Substitution. */
+					next[count++] = position(i + 1, e + 1, distance);
+				}
+			}
+		}
+		return normalize(next, count, distance);
+	}
+
+	/**
+	 * Drops positions subsumed by others and sorts the rest.
+	 */
+	private static List<Integer> normalize(@Nonnull final int[] positions,
+										   final int count,
+										   final int distance) {
+		Arrays.sort(positions, 0, count);
+		final List<Integer> result = new ArrayList<>(count);
+		for(int p = 0; p < count; ++p) {
+			if(p > 0 && positions[p] == positions[p - 1]) {
+				continue;
+			}
+			final int j = positions[p] / (distance + 1);
+			final int f = positions[p] % (distance + 1);
+			boolean subsumed = false;
+			for(int q = 0; q < count && !subsumed; ++q) {
+				final int i = positions[q] / (distance + 1);
+				final int e = positions[q] % (distance + 1);
+				/* (i, e) can reach anything (j, f) can, with no more edits. */
+				subsumed = e < f && Math.abs(j - i) <= f - e;
+			}
+			if(!subsumed) {
+				result.add(positions[p]);
+			}
+		}
+		return result;
+	}
+}
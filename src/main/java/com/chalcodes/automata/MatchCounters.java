@@ -0,0 +1,84 @@
+package com.chalcodes.automata;
+
+import javax.annotation.Nonnull;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the work done by byte matchers.  Counters are attached to a matcher
+ * with {@link AbstractByteMatcher#setCounters(MatchCounters)} and are shared
+ * by its copies.  They are updated once per call to
+ * {@link ByteMatcher#matches(java.nio.ByteBuffer)}, never per byte.  A
+ * matcher without counters does no counting at all.
+ * <p>
+ * Counters shared by many threads contend on every update.  Where that
+ * matters, give each thread its own counters and add them up when reading.
+ *
+ * @author Kevin Krumwiede
+ */
+public class MatchCounters implements MatchCountersMBean {
+	private final AtomicLong mCalls = new AtomicLong();
+	private final AtomicLong mMatches = new AtomicLong();
+	private final AtomicLong mBytesScanned = new AtomicLong();
+
+	void record(final int bytesScanned, final boolean matched) {
+		mCalls.incrementAndGet();
+		if(matched) {
+			mMatches.incrementAndGet();
+		}
+		mBytesScanned.addAndGet(bytesScanned);
+	}
+
+	/**
+	 * Gets the number of calls to {@code matches}.
+	 *
+	 * @return the number of calls
+	 */
+	@Override
+	public long getCalls() {
+		return mCalls.get();
+	}
+
+	/**
+	 * Gets the number of calls to {@code matches} that found a match.
+	 *
+	 * @return the number of matches
+	 */
+	@Override
+	public long getMatches() {
+		return mMatches.get();
+	}
+
+	/**
+	 * Gets the number of bytes examined by calls to {@code matches}.
+	 *
+	 * @return the number of bytes
+	 */
+	@Override
+	public long getBytesScanned() {
+		return mBytesScanned.get();
+	}
+
+	@Override
+	public void reset() {
+		mCalls.set(0);
+		mMatches.set(0);
+		mBytesScanned.set(0);
+	}
+
+	/**
+	 * Registers these counters with the platform MBean server.
+	 *
+	 * @param name the object name, such as
+	 * {@code "com.chalcodes.automata:type=MatchCounters,name=lexer"}
+	 * @return the registered object name
+	 * @throws JMException if the name is invalid or already registered
+	 */
+	@Nonnull public ObjectName register(@Nonnull final String name) throws JMException {
+		final ObjectName objectName = new ObjectName(name);
+		ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+		return objectName;
+	}
+}
@@ -0,0 +1,13 @@
+package com.chalcodes.automata;
+
+/**
+ * JMX management interface of {@link MatchCounters}.
+ *
+ * @author Kevin Krumwiede
+ */
+public interface MatchCountersMBean {
+	long getCalls();
+	long getMatches();
+	long getBytesScanned();
+	void reset();
+}
@@ -0,0 +1,26 @@
+package com.chalcodes.automata;
+
+/**
+ * Selects which match a byte matcher reports.
+ *
+ * @author Kevin Krumwiede
+ * @see AbstractByteMatcher#setMatchMode(MatchMode)
+ */
+public enum MatchMode {
+	/**
+	 * The longest match.  The scan stops when no longer match is possible,
+	 * or when there is no transition.
+	 */
+	LONGEST,
+	/**
+	 * The shortest match.  The scan stops at the first accepting state,
+	 * which suits prefix tests where any match will do.
+	 */
+	SHORTEST,
+	/**
+	 * A match of all the remaining bytes of the buffer.  The scan stops as
+	 * soon as no accepting state can be reached, and the buffer is taken to
+	 * be the whole input, so the scan never underflows.
+	 */
+	FULL
+}
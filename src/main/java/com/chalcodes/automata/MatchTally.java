@@ -0,0 +1,93 @@
+package com.chalcodes.automata;
+
+import javax.annotation.Nonnull;
+import java.util.Arrays;
+
+/**
+ * Counts matches by accepting state.  Counting is a single increment of a
+ * primitive array, so a tally never allocates while scanning.  The counts
+ * are folded into totals by semantic value when they are read.
+ * <p>
+ * A tally is not thread safe.  Threads should count into tallies of their
+ * own and merge them afterward.
+ *
+ * @author Kevin Krumwiede
+ * @see AbstractByteMatcher#newTally()
+ * @see SingleSemanticsByteMatcher#totals(MatchTally)
+ * @see MultipleSemanticsByteMatcher#totals(MatchTally)
+ */
+public class MatchTally {
+	private final ByteTable mTransitions;
+	private final long[] mCounts;
+	private long mUnmatched;
+
+	MatchTally(@Nonnull final ByteTable transitions) {
+		mTransitions = transitions;
+		mCounts = new long[transitions.stateCount()];
+	}
+
+	void count(final int state) {
+		++mCounts[state];
+	}
+
+	void skip() {
+		++mUnmatched;
+	}
+
+	long countOf(final int state) {
+		return mCounts[state];
+	}
+
+	/**
+	 * Adds the counts of another tally of the same matcher to this one.
+	 *
+	 * @param other the other tally
+	 * @return this tally
+	 * @throws IllegalArgumentException if the other tally is of a different
+	 * matcher
+	 */
+	public MatchTally merge(@Nonnull final MatchTally other) {
+		if(other.mTransitions != mTransitions) {
+			throw new IllegalArgumentException("tally is not of the same matcher");
+		}
+		for(int state = 0; state < mCounts.length; ++state) {
+			mCounts[state] += other.mCounts[state];
+		}
+		mUnmatched += other.mUnmatched;
+		return this;
+	}
+
+	/**
+	 * Gets the total number of matches.
+	 *
+	 * @return the number of matches
+	 */
+	public long matches() {
+		long total = 0;
+		for(final long count : mCounts) {
+			total += count;
+		}
+		return total;
+	}
+
+	/**
+	 * Gets the number of bytes at which no match began.
+	 *
+	 * @return the number of unmatched bytes
+	 */
+	public long unmatched() {
+		return mUnmatched;
+	}
+
+	/**
+	 * Resets all counts to zero.
+	 */
+	public void clear() {
+		Arrays.fill(mCounts, 0);
+		mUnmatched = 0;
+	}
+
+	boolean isFor(@Nonnull final ByteTable transitions) {
+		return mTransitions == transitions;
+	}
+}
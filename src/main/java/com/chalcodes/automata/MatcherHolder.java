@@ -0,0 +1,150 @@
+package com.chalcodes.automata;
+
+import javax.annotation.Nonnull;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Publishes new versions of a rule set to scanners while they run.  A new
+ * matcher is compiled on an executor and swapped in atomically once it is
+ * ready.  Tables are never modified after they are built, so a scan that
+ * began on an old version finishes on it undisturbed, and getting the
+ * current version is a single volatile read.
+ * <p>
+ * A holder is thread safe.  Matchers themselves are not, so each scanner
+ * gets a matcher of its own from {@link #newMatcher()} or
+ * {@link Version#newMatcher()}.  A long-running scanner can compare its
+ * version to {@link #current()} between scans to decide whether to get a
+ * new matcher.
+ *
+ * @param <T> the type of semantic value associated with accepting states
+ * @author Kevin Krumwiede
+ */
+public class MatcherHolder<T> {
+	private final AtomicReference<Version<T>> mCurrent;
+	/** The number of the last version submitted. */
+	private final AtomicLong mSubmitted = new AtomicLong(1);
+
+	/**
+	 * Creates a holder whose first version is a matcher that has already
+	 * been built.  The matcher is copied.
+	 *
+	 * @param initial the first version
+	 */
+	public MatcherHolder(@Nonnull final SingleSemanticsByteMatcher<T> initial) {
+		mCurrent = new AtomicReference<>(new Version<>(initial.copy(), 1, 0));
+	}
+
+	/**
+	 * Gets the current version.
+	 *
+	 * @return the current version
+	 */
+	public Version<T> current() {
+		return mCurrent.get();
+	}
+
+	/**
+	 * Gets a matcher of the current version.
+	 *
+	 * @return a new matcher
+	 */
+	public SingleSemanticsByteMatcher<T> newMatcher() {
+		return mCurrent.get().newMatcher();
+	}
+
+	/**
+	 * Compiles a new version on an executor and publishes it when it is
+	 * ready.  If compilation fails, the current version is kept and the
+	 * exception is reported by the returned future.  Versions are numbered
+	 * in the order they are submitted.  Where compilations overlap, a version
+	 * that finishes after a later one has been published is dropped, so the
+	 * last to be submitted wins.
+	 *
+	 * @param compiler builds the new matcher
+	 * @param executor runs the compiler
+	 * @return the future current version, which is a later one if this
+	 * version was dropped
+	 */
+	public Future<Version<T>> update(@Nonnull final Callable<? extends SingleSemanticsByteMatcher<T>> compiler,
+									 @Nonnull final Executor executor) {
+		final long number = mSubmitted.incrementAndGet();
+		final FutureTask<Version<T>> task = new FutureTask<>(new Callable<Version<T>>() {
+			@Override
+			public Version<T> call() throws Exception {
+				final long start = System.nanoTime();
+				final SingleSemanticsByteMatcher<T> matcher = compiler.call();
+				return publish(new Version<>(matcher.copy(), number, System.nanoTime() - start));
+			}
+		});
+		executor.execute(task);
+		return task;
+	}
+
+	private Version<T> publish(@Nonnull final Version<T> next) {
+		Version<T> previous;
+		do {
+			previous = mCurrent.get();
+			if(previous.mNumber > next.mNumber) {
+				return previous;
+			}
+		} while(!mCurrent.compareAndSet(previous, next));
+		return next;
+	}
+
+	/**
+	 * A published version of a rule set.
+	 *
+	 * @param <T> the type of semantic value associated with accepting states
+	 */
+	public static final class Version<T> {
+		private final SingleSemanticsByteMatcher<T> mMatcher;
+		private final long mNumber;
+		private final long mCompileNanos;
+
+		Version(@Nonnull final SingleSemanticsByteMatcher<T> matcher, final long number, final long compileNanos) {
+			mMatcher = matcher;
+			mNumber = number;
+			mCompileNanos = compileNanos;
+		}
+
+		/**
+		 * Gets a matcher of this version.  The matcher shares the tables of
+		 * this version and may be used by one thread.
+		 *
+		 * @return a new matcher
+		 */
+		public SingleSemanticsByteMatcher<T> newMatcher() {
+			return mMatcher.copy();
+		}
+
+		/**
+		 * Gets the number of this version.  The first version is 1, and each
+		 * update is numbered one more than the update submitted before it.
+		 * Numbers of updates that failed or were dropped are skipped.
+		 *
+		 * @return the version number
+		 */
+		public long getNumber() {
+			return mNumber;
+		}
+
+		/**
+		 * Gets how long this version took to compile.
+		 *
+		 * @return the compile time in nanoseconds, or 0 for the first version
+		 */
+		public long getCompileNanos() {
+			return mCompileNanos;
+		}
+
+		@Override
+		public String toString() {
+			return "version " + mNumber;
+		}
+	}
+}
@@ -2,7 +2,9 @@ package com.chalcodes.automata;
 
 import javax.annotation.Nonnull;
 import java.util.BitSet;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -13,10 +15,11 @@ import java.util.Set;
 public class MultipleSemanticsByteMatcher<T> extends AbstractByteMatcher implements MultipleSemantics<T> {
 	private final List<Set<T>> mSemanticValues;
 
-	MultipleSemanticsByteMatcher(@Nonnull final int[][] transitions,
+	MultipleSemanticsByteMatcher(@Nonnull final ByteTable transitions,
 								 @Nonnull final BitSet accepting,
-								 @Nonnull final List<Set<T>> semanticValues) {
-		super(transitions, accepting);
+								 @Nonnull final List<Set<T>> semanticValues,
+								 final boolean backward) {
+		super(transitions, accepting, backward);
 		mSemanticValues = semanticValues;
 	}
 
@@ -25,6 +28,10 @@ public class MultipleSemanticsByteMatcher<T> extends AbstractByteMatcher impleme
 		mSemanticValues = other.mSemanticValues;
 	}
 
+	List<Set<T>> semanticValueList() {
+		return mSemanticValues;
+	}
+
 	@Override
 	@Nonnull public Set<T> semanticValues() {
 		/* Sets in list are unmodifiable, and sets for accepting states are
@@ -32,6 +39,32 @@ public class MultipleSemanticsByteMatcher<T> extends AbstractByteMatcher impleme
 		return mSemanticValues.get(matchState());
 	}
 
+	/**
+	 * Folds the counts of a tally into totals by semantic value.  A match
+	 * counts toward every semantic value of its accepting state.
+	 *
+	 * @param tally the tally
+	 * @return the number of matches of each semantic value
+	 * @throws IllegalArgumentException if the tally is not of this matcher
+	 */
+	public Map<T, Long> totals(@Nonnull final MatchTally tally) {
+		if(!tally.isFor(transitions())) {
+			throw new IllegalArgumentException("tally is not of this matcher");
+		}
+		final Map<T, Long> totals = new HashMap<>();
+		final BitSet accepting = accepting();
+		for(int state = accepting.nextSetBit(0); state >= 0; state = accepting.nextSetBit(state + 1)) {
+			final long count = tally.countOf(state);
+			if(count > 0) {
+				for(final T semanticValue : mSemanticValues.get(state)) {
+					final Long total = totals.get(semanticValue);
+					totals.put(semanticValue, total == null ? count : total + count);
+				}
+			}
+		}
+		return totals;
+	}
+
 	public MultipleSemanticsByteMatcher<T> copy() {
 		return new MultipleSemanticsByteMatcher<>(this);
 	}
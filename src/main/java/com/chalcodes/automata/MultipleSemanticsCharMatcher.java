@@ -0,0 +1,41 @@
+package com.chalcodes.automata;
+
+import javax.annotation.Nonnull;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A char matcher whose accepting states may have any number of semantic
+ * values.
+ *
+ * @author Kevin Krumwiede
+ * @see CharMatchers#multipleSemantics(Automaton)
+ */
+public class MultipleSemanticsCharMatcher<T> extends AbstractCharMatcher implements MultipleSemantics<T> {
+	private final List<Set<T>> mSemanticValues;
+
+	MultipleSemanticsCharMatcher(@Nonnull final CharClasses classes,
+								 @Nonnull final int[] transitions,
+								 @Nonnull final BitSet accepting,
+								 @Nonnull final List<Set<T>> semanticValues) {
+		super(classes, transitions, accepting);
+		mSemanticValues = semanticValues;
+	}
+
+	private MultipleSemanticsCharMatcher(@Nonnull final MultipleSemanticsCharMatcher<T> other) {
+		super(other);
+		mSemanticValues = other.mSemanticValues;
+	}
+
+	@Override
+	@Nonnull public Set<T> semanticValues() {
+		/* Sets in list are unmodifiable, and sets for accepting states are
+		 * guaranteed non-null. */
+		return mSemanticValues.get(matchState());
+	}
+
+	public MultipleSemanticsCharMatcher<T> copy() {
+		return new MultipleSemanticsCharMatcher<>(this);
+	}
+}
@@ -0,0 +1,38 @@
+package com.chalcodes.automata;
+
+import javax.annotation.Nonnull;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A bit-parallel NFA byte matcher that reports every semantic value of the
+ * accepting positions active at the end of the longest match.
+ *
+ * @author Kevin Krumwiede
+ * @see ByteMatchers#multipleSemanticsNfa(Automaton)
+ */
+public class MultipleSemanticsNfaByteMatcher<T> extends AbstractNfaByteMatcher<T> implements MultipleSemantics<T> {
+
+	MultipleSemanticsNfaByteMatcher(@Nonnull final BitParallelNfa<T> nfa) {
+		super(nfa);
+	}
+
+	@Override
+	@Nonnull public Set<T> semanticValues() {
+		checkMatched();
+		final Set<T> result = new HashSet<>();
+		for(int i = 0; i < mMatch.length; ++i) {
+			long word = mMatch[i];
+			while(word != 0) {
+				result.addAll(mNfa.mSemanticValues.get((i << 6) + Long.numberOfTrailingZeros(word)));
+				word &= word - 1;
+			}
+		}
+		return Collections.unmodifiableSet(result);
+	}
+
+	public MultipleSemanticsNfaByteMatcher<T> copy() {
+		return new MultipleSemanticsNfaByteMatcher<>(mNfa);
+	}
+}
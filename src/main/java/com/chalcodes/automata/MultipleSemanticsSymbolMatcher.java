@@ -0,0 +1,42 @@
+package com.chalcodes.automata;
+
+import javax.annotation.Nonnull;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A symbol matcher whose accepting states may have any number of semantic
+ * values.
+ *
+ * @author Kevin Krumwiede
+ * @see SymbolMatchers#multipleSemantics(Automaton)
+ */
+public class MultipleSemanticsSymbolMatcher<S,T> extends AbstractSymbolMatcher<S> implements MultipleSemantics<T> {
+	private final List<Set<T>> mSemanticValues;
+
+	MultipleSemanticsSymbolMatcher(@Nonnull final SymbolIndex<S> index,
+								   @Nonnull final int[] transitions,
+								   final int stride,
+								   @Nonnull final BitSet accepting,
+								   @Nonnull final List<Set<T>> semanticValues) {
+		super(index, transitions, stride, accepting);
+		mSemanticValues = semanticValues;
+	}
+
+	private MultipleSemanticsSymbolMatcher(@Nonnull final MultipleSemanticsSymbolMatcher<S,T> other) {
+		super(other);
+		mSemanticValues = other.mSemanticValues;
+	}
+
+	@Override
+	@Nonnull public Set<T> semanticValues() {
+		/* Sets in list are unmodifiable, and sets for accepting states are
+		 * guaranteed non-null. */
+		return mSemanticValues.get(matchState());
+	}
+
+	public MultipleSemanticsSymbolMatcher<S,T> copy() {
+		return new MultipleSemanticsSymbolMatcher<>(this);
+	}
+}
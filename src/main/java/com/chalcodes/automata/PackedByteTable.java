@@ -0,0 +1,108 @@
+package com.chalcodes.automata;
+
+import javax.annotation.Nonnull;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+
+/**
+ * A transition table packed by row displacement, also known as a comb
+ * vector or double array.  The rows of all states are overlaid in one pair
+ * of arrays, each row shifted by a base offset so that its transitions land
+ * in cells no other row uses.  A check array records which state owns each
+ * cell, so a lookup is still constant time:
+ * <pre>i = base[state] + input; next = check[i] == state ? next[i] : NO_TRANSITION</pre>
+ * Memory is proportional to the number of transitions rather than to the
+ * number of states times 256.
+ *
+ * @author Kevin Krumwiede
+ */
+final class PackedByteTable extends ByteTable {
+	private final int[] mBase;
+	private final int[] mCheck;
+	private final int[] mNext;
+
+	PackedByteTable(@Nonnull final Builder builder) {
+		super(builder);
+		final int states = builder.stateCount();
+		mBase = new int[states];
+		/* Place the largest rows first, while the arrays are emptiest. */
+		final Integer[] order = new Integer[states];
+		for(int state = 0; state < states; ++state) {
+			order[state] = state;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(final Integer a, final Integer b) {
+				return Integer.compare(builder.count(b), builder.count(a));
+			}
+		});
+		final BitSet used = new BitSet();
+		int[] check = new int[1024];
+		int[] next = new int[1024];
+		Arrays.fill(check, NO_TRANSITION);
+		int length = 256;
+		/* Every cell below this one is used.  Without this bound, the search
+		 * for each row would walk the whole filled prefix of the arrays. */
+		int lowest = 0;
+		for(final int state : order) {
+			final int count = builder.count(state);
+			if(count == 0) {
+				/* Every lookup in an empty row fails the check. */
+				continue;
+			}
+			/* First fit: try to put the first input of the row in each free
+			 * cell in turn. */
+			final int first = builder.input(state, 0);
+			int base;
+			for(int cell = used.nextClearBit(Math.max(first, lowest)); ; cell = used.nextClearBit(cell + 1)) {
+				base = cell - first;
+				boolean fits = true;
+				for(int i = 1; i < count; ++i) {
+					if(used.get(base + builder.input(state, i))) {
+						fits = false;
+						break;
+					}
+				}
+				if(fits) {
+					break;
+				}
+			}
+			mBase[state] = base;
+			if(base + 256 > check.length) {
+				final int size = Math.max(check.length * 2, base + 256);
+				final int oldSize = check.length;
+				check = Arrays.copyOf(check, size);
+				next = Arrays.copyOf(next, size);
+				Arrays.fill(check, oldSize, size, NO_TRANSITION);
+			}
+			for(int i = 0; i < count; ++i) {
+				final int cell = base + builder.input(state, i);
+				used.set(cell);
+				check[cell] = state;
+				next[cell] = builder.target(state, i);
+			}
+			lowest = used.nextClearBit(lowest);
+			length = Math.max(length, base + 256);
+		}
+		/* Every base plus any input must be in bounds. */
+		mCheck = Arrays.copyOf(check, length);
+		mNext = Arrays.copyOf(next, length);
+	}
+
+	@Override
+	int next(final int state, final int input) {
+		final int i = mBase[state] + input;
+		return mCheck[i] == state ? mNext[i] : NO_TRANSITION;
+	}
+
+	@Override
+	int stateCount() {
+		return mBase.length;
+	}
+
+	@Override
+	long bytes() {
+		return 16 + 4L * mBase.length + 2 * (16 + 4L * mCheck.length);
+	}
+}
@@ -0,0 +1,168 @@
+package com.chalcodes.automata;
+
+import javax.annotation.Nonnull;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A byte matcher for a rule set too large to determinize as one DFA.  The
+ * rules are split into groups that are determinized separately, and the
+ * DFAs of the groups are stepped together in one pass over the input.  The
+ * longest match of any group wins.  Where groups match the same length,
+ * the semantic value that comes first in the order of the priority wins.
+ * <p>
+ * This matcher scans forward and finds the longest match.
+ *
+ * @param <T> the type of semantic value associated with accepting states
+ * @author Kevin Krumwiede
+ * @see ByteMatchers#partitioned(List, List, Comparator, int)
+ */
+public class PartitionedByteMatcher<T> implements ByteMatcher, SingleSemantics<T> {
+	private static final int INITIAL = 0;
+	private static final int DEAD = -1;
+	private static final int NO_MATCH = -1;
+	private final ByteTable[] mTransitions;
+	private final BitSet[] mAccepting;
+	private final BitSet[] mHopeless;
+	private final List<List<T>> mSemanticValues;
+	private final Comparator<? super T> mPriority;
+	private final List<SingleSemanticsByteMatcher<T>> mGroups;
+	private final int[] mStates;
+	private int mMatchGroup = NO_MATCH;
+	private int mMatchState;
+	private int mLength;
+
+	PartitionedByteMatcher(@Nonnull final List<SingleSemanticsByteMatcher<T>> groups,
+						   @Nonnull final Comparator<? super T> priority) {
+		final int count = groups.size();
+		mTransitions = new ByteTable[count];
+		mAccepting = new BitSet[count];
+		mHopeless = new BitSet[count];
+		mSemanticValues = new ArrayList<>(count);
+		for(int i = 0; i < count; ++i) {
+			final SingleSemanticsByteMatcher<T> group = groups.get(i);
+			mTransitions[i] = group.transitions();
+			mAccepting[i] = group.accepting();
+			mHopeless[i] = group.hopeless();
+			mSemanticValues.add(group.semanticValueList());
+		}
+		mPriority = priority;
+		mGroups = Collections.unmodifiableList(new ArrayList<>(groups));
+		mStates = new int[count];
+	}
+
+	private PartitionedByteMatcher(@Nonnull final PartitionedByteMatcher<T> other) {
+		mTransitions = other.mTransitions;
+		mAccepting = other.mAccepting;
+		mHopeless = other.mHopeless;
+		mSemanticValues = other.mSemanticValues;
+		mPriority = other.mPriority;
+		mGroups = other.mGroups;
+		mStates = new int[other.mStates.length];
+	}
+
+	public PartitionedByteMatcher<T> copy() {
+		return new PartitionedByteMatcher<>(this);
+	}
+
+	/**
+	 * Gets the matchers of the groups.  Each has the build report of its
+	 * group.  They must not be used for matching without being copied.
+	 *
+	 * @return an unmodifiable list of the group matchers
+	 */
+	public List<SingleSemanticsByteMatcher<T>> getGroups() {
+		return mGroups;
+	}
+
+	@Override
+	public void reset() {
+		mMatchGroup = NO_MATCH;
+	}
+
+	@Override
+	public int length() {
+		if(mMatchGroup == NO_MATCH) {
+			throw new IllegalStateException("no match");
+		}
+		return mLength;
+	}
+
+	@Override
+	public T semanticValue() {
+		length();
+		return mSemanticValues.get(mMatchGroup).get(mMatchState);
+	}
+
+	@Override
+	public boolean matches(@Nonnull final ByteBuffer buffer) {
+		reset();
+		final int position = buffer.position();
+		final int remaining = buffer.remaining();
+		int live = 0;
+		for(int group = 0; group < mStates.length; ++group) {
+			if(mAccepting[group].get(INITIAL)) {
+				offer(group, INITIAL, 0);
+			}
+			if(mHopeless[group].get(INITIAL)) {
+				mStates[group] = DEAD;
+			}
+			else {
+				mStates[group] = INITIAL;
+				++live;
+			}
+		}
+		int consumed = 0;
+		while(live > 0 && consumed < remaining) {
+			final int input = buffer.get(position + consumed) & 0xFF;
+			++consumed;
+			for(int group = 0; group < mStates.length; ++group) {
+				if(mStates[group] == DEAD) {
+					continue;
+				}
+				final int next = mTransitions[group].next(mStates[group], input);
+				if(next == ByteTable.NO_TRANSITION) {
+					mStates[group] = DEAD;
+					--live;
+					continue;
+				}
+				if(mAccepting[group].get(next)) {
+					offer(group, next, consumed);
+				}
+				if(mHopeless[group].get(next)) {
+					mStates[group] = DEAD;
+					--live;
+				}
+				else {
+					mStates[group] = next;
+				}
+			}
+		}
+		if(live > 0) {
+			throw new BufferUnderflowException();
+		}
+		return mMatchGroup != NO_MATCH;
+	}
+
+	/**
+	 * Records a match if it is longer than the current match, or as long and
+	 * of higher priority.
+	 */
+	private void offer(final int group, final int state, final int length) {
+		if(mMatchGroup != NO_MATCH && length == mLength) {
+			final T current = mSemanticValues.get(mMatchGroup).get(mMatchState);
+			final T candidate = mSemanticValues.get(group).get(state);
+			if(candidate == null || (current != null && mPriority.compare(candidate, current) >= 0)) {
+				return;
+			}
+		}
+		mMatchGroup = group;
+		mMatchState = state;
+		mLength = length;
+	}
+}
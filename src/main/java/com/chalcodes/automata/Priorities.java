@@ -0,0 +1,50 @@
+package com.chalcodes.automata;
+
+import javax.annotation.Nonnull;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Produces comparators for resolving conflicts between semantic values.
+ *
+ * @author Kevin Krumwiede
+ * @see Automaton#determinize(Comparator)
+ */
+public class Priorities {
+	private Priorities() {}
+
+	/**
+	 * Creates a comparator that ranks semantic values by their order in a
+	 * list, so earlier values win.  This is the usual rule for lexers, where
+	 * keywords are listed before identifiers.
+	 *
+	 * @param values the values in order of priority
+	 * @param <T> the type of semantic values
+	 * @return the comparator
+	 * @throws IllegalArgumentException if a value appears more than once
+	 */
+	public static <T> Comparator<T> byOrder(@Nonnull final List<? extends T> values) {
+		final Map<T, Integer> ranks = new HashMap<>();
+		for(final T value : values) {
+			if(ranks.put(value, ranks.size()) != null) {
+				throw new IllegalArgumentException("duplicate value: " + value);
+			}
+		}
+		return new Comparator<T>() {
+			@Override
+			public int compare(final T a, final T b) {
+				return Integer.compare(rank(a), rank(b));
+			}
+
+			private int rank(final T value) {
+				final Integer rank = ranks.get(value);
+				if(rank == null) {
+					throw new IllegalArgumentException("unranked value: " + value);
+				}
+				return rank;
+			}
+		};
+	}
+}
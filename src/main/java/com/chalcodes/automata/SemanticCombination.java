@@ -0,0 +1,17 @@
+package com.chalcodes.automata;
+
+/**
+ * Selects the semantic values of an accepting state in the product of two
+ * automatons.
+ *
+ * @author Kevin Krumwiede
+ * @see Automaton#intersect(Automaton, SemanticCombination)
+ */
+public enum SemanticCombination {
+	/** Keep the semantic values of the left operand. */
+	LEFT,
+	/** Keep the semantic values of the right operand. */
+	RIGHT,
+	/** Keep the semantic values of both operands. */
+	UNION
+}
@@ -2,7 +2,9 @@ package com.chalcodes.automata;
 
 import javax.annotation.Nonnull;
 import java.util.BitSet;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * TODO javadoc
@@ -12,10 +14,11 @@ import java.util.List;
 public class SingleSemanticsByteMatcher<T> extends AbstractByteMatcher implements SingleSemantics<T> {
 	private final List<T> mSemanticValues;
 
-	SingleSemanticsByteMatcher(@Nonnull final int[][] transitions,
+	SingleSemanticsByteMatcher(@Nonnull final ByteTable transitions,
 							   @Nonnull final BitSet accepting,
-							   @Nonnull final List<T> semanticValues) {
-		super(transitions, accepting);
+							   @Nonnull final List<T> semanticValues,
+							   final boolean backward) {
+		super(transitions, accepting, backward);
 		mSemanticValues = semanticValues;
 	}
 
@@ -24,11 +27,40 @@ public class SingleSemanticsByteMatcher<T> extends AbstractByteMatcher implement
 		mSemanticValues = other.mSemanticValues;
 	}
 
+	List<T> semanticValueList() {
+		return mSemanticValues;
+	}
+
 	@Override
 	public T semanticValue() {
 		return mSemanticValues.get(matchState());
 	}
 
+	/**
+	 * Folds the counts of a tally into totals by semantic value.  Matches
+	 * of accepting states without a semantic value are not included.
+	 *
+	 * @param tally the tally
+	 * @return the number of matches of each semantic value
+	 * @throws IllegalArgumentException if the tally is not of this matcher
+	 */
+	public Map<T, Long> totals(@Nonnull final MatchTally tally) {
+		if(!tally.isFor(transitions())) {
+			throw new IllegalArgumentException("tally is not of this matcher");
+		}
+		final Map<T, Long> totals = new HashMap<>();
+		final BitSet accepting = accepting();
+		for(int state = accepting.nextSetBit(0); state >= 0; state = accepting.nextSetBit(state + 1)) {
+			final long count = tally.countOf(state);
+			final T semanticValue = mSemanticValues.get(state);
+			if(count > 0 && semanticValue != null) {
+				final Long total = totals.get(semanticValue);
+				totals.put(semanticValue, total == null ? count : total + count);
+			}
+		}
+		return totals;
+	}
+
 	public SingleSemanticsByteMatcher<T> copy() {
 		return new SingleSemanticsByteMatcher<>(this);
 	}
@@ -0,0 +1,38 @@
+package com.chalcodes.automata;
+
+import javax.annotation.Nonnull;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * A char matcher whose accepting states each have at most one semantic
+ * value.
+ *
+ * @author Kevin Krumwiede
+ * @see CharMatchers#singleSemantics(Automaton)
+ */
+public class SingleSemanticsCharMatcher<T> extends AbstractCharMatcher implements SingleSemantics<T> {
+	private final List<T> mSemanticValues;
+
+	SingleSemanticsCharMatcher(@Nonnull final CharClasses classes,
+							 @Nonnull final int[] transitions,
+							 @Nonnull final BitSet accepting,
+							 @Nonnull final List<T> semanticValues) {
+		super(classes, transitions, accepting);
+		mSemanticValues = semanticValues;
+	}
+
+	private SingleSemanticsCharMatcher(@Nonnull final SingleSemanticsCharMatcher<T> other) {
+		super(other);
+		mSemanticValues = other.mSemanticValues;
+	}
+
+	@Override
+	public T semanticValue() {
+		return mSemanticValues.get(matchState());
+	}
+
+	public SingleSemanticsCharMatcher<T> copy() {
+		return new SingleSemanticsCharMatcher<>(this);
+	}
+}
@@ -0,0 +1,63 @@
+package com.chalcodes.automata;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Comparator;
+
+/**
+ * A bit-parallel NFA byte matcher that reports one semantic value per
+ * match.  Unlike a DFA matcher, several accepting positions may be active
+ * at the end of a match.  Either they must agree on the semantic value, or
+ * a priority chooses among their values.
+ *
+ * @author Kevin Krumwiede
+ * @see ByteMatchers#singleSemanticsNfa(Automaton)
+ * @see ByteMatchers#singleSemanticsNfa(Automaton, Comparator)
+ */
+public class SingleSemanticsNfaByteMatcher<T> extends AbstractNfaByteMatcher<T> implements SingleSemantics<T> {
+	@Nullable private final Comparator<? super T> mPriority;
+
+	SingleSemanticsNfaByteMatcher(@Nonnull final BitParallelNfa<T> nfa,
+								  @Nullable final Comparator<? super T> priority) {
+		super(nfa);
+		mPriority = priority;
+	}
+
+	/**
+	 * Gets the semantic value of the longest match.
+	 *
+	 * @return the semantic value, or null if the match has none
+	 * @throws IllegalStateException if there is no match, or if there is no
+	 * priority and the active accepting positions have different semantic
+	 * values
+	 */
+	@Override
+	public T semanticValue() {
+		checkMatched();
+		T result = null;
+		for(int i = 0; i < mMatch.length; ++i) {
+			long word = mMatch[i];
+			while(word != 0) {
+				for(final T value : mNfa.mSemanticValues.get((i << 6) + Long.numberOfTrailingZeros(word))) {
+					if(result == null) {
+						result = value;
+					}
+					else if(mPriority == null) {
+						if(!result.equals(value)) {
+							throw new IllegalStateException("multiple semantics");
+						}
+					}
+					else if(mPriority.compare(value, result) < 0) {
+						result = value;
+					}
+				}
+				word &= word - 1;
+			}
+		}
+		return result;
+	}
+
+	public SingleSemanticsNfaByteMatcher<T> copy() {
+		return new SingleSemanticsNfaByteMatcher<>(mNfa, mPriority);
+	}
+}
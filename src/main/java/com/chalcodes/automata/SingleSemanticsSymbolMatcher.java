@@ -0,0 +1,39 @@
+package com.chalcodes.automata;
+
+import javax.annotation.Nonnull;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * A symbol matcher whose accepting states each have at most one semantic
+ * value.
+ *
+ * @author Kevin Krumwiede
+ * @see SymbolMatchers#singleSemantics(Automaton)
+ */
+public class SingleSemanticsSymbolMatcher<S,T> extends AbstractSymbolMatcher<S> implements SingleSemantics<T> {
+	private final List<T> mSemanticValues;
+
+	SingleSemanticsSymbolMatcher(@Nonnull final SymbolIndex<S> index,
+								 @Nonnull final int[] transitions,
+								 final int stride,
+								 @Nonnull final BitSet accepting,
+								 @Nonnull final List<T> semanticValues) {
+		super(index, transitions, stride, accepting);
+		mSemanticValues = semanticValues;
+	}
+
+	private SingleSemanticsSymbolMatcher(@Nonnull final SingleSemanticsSymbolMatcher<S,T> other) {
+		super(other);
+		mSemanticValues = other.mSemanticValues;
+	}
+
+	@Override
+	public T semanticValue() {
+		return mSemanticValues.get(matchState());
+	}
+
+	public SingleSemanticsSymbolMatcher<S,T> copy() {
+		return new SingleSemanticsSymbolMatcher<>(this);
+	}
+}
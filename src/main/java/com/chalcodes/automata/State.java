@@ -2,8 +2,11 @@ package com.chalcodes.automata;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.util.ArrayDeque;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
@@ -24,10 +27,24 @@ public class State<S,T> {
 	@Nullable private Set<State<S,T>> mEpsilons;
 	private boolean mAccepting;
 	@Nullable private Set<T> mSemanticValues;
+	/** The capture tag recorded when this state is entered, or -1. */
+	private int mTag = NO_TAG;
 
+	static final int NO_TAG = -1;
+
+	int getTag() {
+		return mTag;
+	}
+
+	void setTag(final int tag) {
+		mTag = tag;
+	}
+
+	/* Epsilons are kept in insertion order so a tagged DFA can prefer paths
+	 * through earlier alternatives. */
 	void addEpsilon(@Nonnull final State<S,T> epsilon) {
 		if(mEpsilons == null) {
-			mEpsilons = new HashSet<>();
+			mEpsilons = new LinkedHashSet<>();
 		}
 		mEpsilons.add(epsilon);
 	}
@@ -35,7 +52,7 @@ public class State<S,T> {
 	void addEpsilons(@Nonnull final Collection<State<S,T>> epsilons) {
 		if(!epsilons.isEmpty()) {
 			if(mEpsilons == null) {
-				mEpsilons = new HashSet<>();
+				mEpsilons = new LinkedHashSet<>();
 			}
 			mEpsilons.addAll(epsilons);
 		}
@@ -48,21 +65,31 @@ public class State<S,T> {
 		}
 	}
 
-	Set<State<S,T>> getEpsilonClosure() {
-		final Set<State<S,T>> result = new HashSet<>();
-		getEpsilonClosure(result);
-		return result;
+	/**
+	 * Gets the epsilon transitions of this state, not including itself, in
+	 * the order they were added.
+	 */
+	@Nonnull Collection<State<S,T>> getEpsilons() {
+		return mEpsilons == null ? Collections.<State<S,T>>emptySet() : mEpsilons;
 	}
 
-	private void getEpsilonClosure(@Nonnull final Collection<State<S,T>> result) {
+	Set<State<S,T>> getEpsilonClosure() {
+		/* Iterative, so long epsilon chains cannot overflow the stack. */
+		final Set<State<S,T>> result = new HashSet<>();
+		final Deque<State<S,T>> stack = new ArrayDeque<>();
 		result.add(this);
-		if(mEpsilons != null) {
-			for(State<S,T> state : mEpsilons) {
-				if(result.add(state)) {
-					state.getEpsilonClosure(result);
+		stack.push(this);
+		while(!stack.isEmpty()) {
+			final State<S,T> state = stack.pop();
+			if(state.mEpsilons != null) {
+				for(final State<S,T> epsilon : state.mEpsilons) {
+					if(result.add(epsilon)) {
+						stack.push(epsilon);
+					}
 				}
 			}
 		}
+		return result;
 	}
 
 	Set<State<S,T>> findReachable() {
@@ -136,6 +163,18 @@ public class State<S,T> {
 		return mSemanticValues != null && mSemanticValues.size() > 1;
 	}
 
+	/**
+	 * Discards all but the first semantic value in the order of a
+	 * comparator.
+	 */
+	void retainFirst(@Nonnull final Comparator<? super T> priority) {
+		if(mSemanticValues != null && mSemanticValues.size() > 1) {
+			final T first = Collections.min(mSemanticValues, priority);
+			mSemanticValues.clear();
+			mSemanticValues.add(first);
+		}
+	}
+
 	void getSemanticValues(@Nonnull final Set<T> result) {
 		if(mSemanticValues != null) {
 			result.addAll(mSemanticValues);
@@ -149,40 +188,39 @@ public class State<S,T> {
 	}
 
 	@Nonnull Map<State<S,T>, State<S,T>> copy() {
+		/* Create all the copies first, then connect them, so long chains of
+		 * states cannot overflow the stack. */
+		final Set<State<S,T>> reachable = findReachable();
 		final Map<State<S,T>, State<S,T>> map = new HashMap<>();
-		copy(map);
-		return map;
-	}
-
-	@Nonnull private State<S,T> copy(@Nonnull final Map<State<S,T>, State<S,T>> map) {
-		if(map.containsKey(this)) {
-			return map.get(this);
-		}
-		else {
+		for(final State<S,T> state : reachable) {
 			final State<S,T> copy = new State<>();
-			map.put(this, copy);
-			if(mEpsilons != null) {
-				for(final State<S,T> epsilon : mEpsilons) {
-					copy.addEpsilon(epsilon.copy(map));
+			copy.mAccepting = state.mAccepting;
+			copy.mTag = state.mTag;
+			if(state.mSemanticValues != null) {
+				copy.mSemanticValues = new HashSet<>();
+				copy.mSemanticValues.addAll(state.mSemanticValues);
+			}
+			map.put(state, copy);
+		}
+		final Set<State<S,T>> transitions = new HashSet<>();
+		for(final State<S,T> state : reachable) {
+			final State<S,T> copy = map.get(state);
+			if(state.mEpsilons != null) {
+				for(final State<S,T> epsilon : state.mEpsilons) {
+					copy.addEpsilon(map.get(epsilon));
 				}
 			}
-			if(mTransitions != null) {
-				final Set<State<S,T>> transitions = new HashSet<>();
-				for(S input : mTransitions.keySet()) {
+			if(state.mTransitions != null) {
+				for(S input : state.mTransitions.keySet()) {
 					transitions.clear();
-					getTransitions(input, transitions);
+					state.getTransitions(input, transitions);
 					for(final State<S,T> transition : transitions) {
-						copy.addTransition(input, transition.copy(map));
+						copy.addTransition(input, map.get(transition));
 					}
 				}
 			}
-			copy.mAccepting = mAccepting;
-			if(mSemanticValues != null) {
-				copy.mSemanticValues = new HashSet<>();
-				copy.mSemanticValues.addAll(mSemanticValues);
-			}
-			return copy;
 		}
+		return map;
 	}
 
 	boolean hasTransitions() {
@@ -219,6 +257,23 @@ public class State<S,T> {
 		}
 	}
 
+	/**
+	 * Gets the transition for an input.  Intended for states of a
+	 * deterministic automaton, which have at most one transition per input.
+	 *
+	 * @param input the input
+	 * @return the transition, or null if there is none
+	 */
+	@Nullable State<S,T> getTransition(@Nonnull final S input) {
+		if(mTransitions != null) {
+			final Set<State<S,T>> transitions = mTransitions.get(input);
+			if(transitions != null && !transitions.isEmpty()) {
+				return transitions.iterator().next();
+			}
+		}
+		return null;
+	}
+
 	void getTransitions(@Nonnull final S input, @Nonnull final Set<State<S,T>> result) {
 		if(mTransitions != null && mTransitions.containsKey(input)) {
 			result.addAll(mTransitions.get(input));
@@ -0,0 +1,64 @@
+package com.chalcodes.automata;
+
+import javax.annotation.Nonnull;
+import java.nio.ByteBuffer;
+
+/**
+ * Counts how often each state of a table-based matcher is visited while
+ * scanning a sample corpus.  The counts can be used to renumber the states
+ * so the hot ones are packed together at the front of the table.
+ *
+ * @author Kevin Krumwiede
+ * @see AbstractByteMatcher#newProfile()
+ * @see ByteMatchers#renumber(SingleSemanticsByteMatcher, StateProfile)
+ */
+public class StateProfile {
+	private final ByteTable mTransitions;
+	private final boolean mBackward;
+	private final long[] mVisits;
+
+	StateProfile(@Nonnull final ByteTable transitions, final boolean backward) {
+		mTransitions = transitions;
+		mBackward = backward;
+		mVisits = new long[transitions.stateCount()];
+	}
+
+	/**
+	 * Walks the table over the remaining bytes of a buffer as a match would,
+	 * counting a visit to every state entered, including the initial state.
+	 * The walk stops at the end of the buffer or when there is no
+	 * transition.  The position of the buffer is not changed.
+	 *
+	 * @param buffer the sample input
+	 * @return this profile
+	 */
+	public StateProfile record(@Nonnull final ByteBuffer buffer) {
+		int state = 0;
+		++mVisits[state];
+		final int remaining = buffer.remaining();
+		final int start = mBackward ? buffer.limit() - 1 : buffer.position();
+		final int direction = mBackward ? -1 : 1;
+		for(int consumed = 0; consumed < remaining; ++consumed) {
+			state = mTransitions.next(state, buffer.get(start + direction * consumed) & 0xFF);
+			if(state == AbstractByteMatcher.NO_TRANSITION) {
+				break;
+			}
+			++mVisits[state];
+		}
+		return this;
+	}
+
+	/**
+	 * Gets the number of visits to a state.
+	 *
+	 * @param state the state number
+	 * @return the number of visits
+	 */
+	public long visits(final int state) {
+		return mVisits[state];
+	}
+
+	boolean isFor(@Nonnull final ByteTable transitions) {
+		return mTransitions == transitions;
+	}
+}
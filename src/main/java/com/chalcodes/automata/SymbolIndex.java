@@ -0,0 +1,120 @@
+package com.chalcodes.automata;
+
+import javax.annotation.Nonnull;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Maps the symbols of an automaton to dense IDs.  Enum symbols are indexed
+ * by ordinal; other symbols by an open-addressing hash table, so lookups do
+ * not allocate.
+ *
+ * @param <S> the type of symbol
+ * @author Kevin Krumwiede
+ */
+abstract class SymbolIndex<S> {
+	static final int UNKNOWN = -1;
+
+	/**
+	 * Gets the ID of a symbol.
+	 *
+	 * @param symbol the symbol
+	 * @return the ID, or {@link #UNKNOWN} if the symbol is not in the index
+	 */
+	abstract int indexOf(@Nonnull S symbol);
+
+	/**
+	 * Creates an index of symbols.  IDs are assigned in iteration order.
+	 *
+	 * @param symbols the distinct symbols
+	 * @param <S> the type of symbol
+	 * @return the index
+	 */
+	static <S> SymbolIndex<S> create(@Nonnull final Collection<S> symbols) {
+		Class<?> enumType = null;
+		for(final S symbol : symbols) {
+			if(!(symbol instanceof Enum)) {
+				enumType = null;
+				break;
+			}
+			final Class<?> type = ((Enum<?>) symbol).getDeclaringClass();
+			if(enumType == null) {
+				enumType = type;
+			}
+			else if(enumType != type) {
+				enumType = null;
+				break;
+			}
+		}
+		if(enumType != null) {
+			return new EnumIndex<>(enumType, symbols);
+		}
+		return new HashIndex<>(symbols);
+	}
+
+	private static class EnumIndex<S> extends SymbolIndex<S> {
+		private final Class<?> mType;
+		private final int[] mIds;
+
+		EnumIndex(@Nonnull final Class<?> type, @Nonnull final Collection<S> symbols) {
+			mType = type;
+			mIds = new int[type.getEnumConstants().length];
+			Arrays.fill(mIds, UNKNOWN);
+			int id = 0;
+			for(final S symbol : symbols) {
+				mIds[((Enum<?>) symbol).ordinal()] = id++;
+			}
+		}
+
+		@Override
+		int indexOf(@Nonnull final S symbol) {
+			if(symbol instanceof Enum && ((Enum<?>) symbol).getDeclaringClass() == mType) {
+				return mIds[((Enum<?>) symbol).ordinal()];
+			}
+			return UNKNOWN;
+		}
+	}
+
+	private static class HashIndex<S> extends SymbolIndex<S> {
+		private final Object[] mKeys;
+		private final int[] mIds;
+		private final int mMask;
+
+		HashIndex(@Nonnull final Collection<S> symbols) {
+			int capacity = 2;
+			while(capacity < symbols.size() * 2) {
+				capacity <<= 1;
+			}
+			mKeys = new Object[capacity];
+			mIds = new int[capacity];
+			mMask = capacity - 1;
+			int id = 0;
+			for(final S symbol : symbols) {
+				int i = hash(symbol) & mMask;
+				while(mKeys[i] != null) {
+					i = (i + 1) & mMask;
+				}
+				mKeys[i] = symbol;
+				mIds[i] = id++;
+			}
+		}
+
+		private static int hash(@Nonnull final Object symbol) {
+			final int h = symbol.hashCode();
+			return h ^ (h >>> 16);
+		}
+
+		@Override
+		int indexOf(@Nonnull final S symbol) {
+			int i = hash(symbol) & mMask;
+			Object key;
+			while((key = mKeys[i]) != null) {
+				if(key.equals(symbol)) {
+					return mIds[i];
+				}
+				i = (i + 1) & mMask;
+			}
+			return UNKNOWN;
+		}
+	}
+}
@@ -0,0 +1,56 @@
+package com.chalcodes.automata;
+
+import javax.annotation.Nonnull;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Matches sequences of arbitrary symbols.  Symbols are interned to dense IDs
+ * when the matcher is compiled.  Sequences may be given as symbols or as
+ * IDs obtained from {@link #symbolId(Object)}.  The end of the input ends
+ * the match.
+ *
+ * @param <S> the type of symbol received as input
+ * @author Kevin Krumwiede
+ */
+public interface SymbolMatcher<S> {
+	void reset();
+	int length();
+
+	/**
+	 * Gets the dense ID of a symbol.
+	 *
+	 * @param symbol the symbol
+	 * @return the ID, or -1 if the symbol does not appear in the automaton
+	 */
+	int symbolId(@Nonnull S symbol);
+
+	/**
+	 * Finds the longest match starting at an index of a list.
+	 *
+	 * @param symbols the symbols
+	 * @param start the index of the first symbol
+	 * @return true if there is a match; otherwise false
+	 */
+	boolean matches(@Nonnull List<S> symbols, int start);
+
+	/**
+	 * Finds the longest match at the start of an iterator.  The iterator is
+	 * advanced past the last symbol examined, which may be one past the end
+	 * of the match.
+	 *
+	 * @param symbols the symbols
+	 * @return true if there is a match; otherwise false
+	 */
+	boolean matches(@Nonnull Iterator<S> symbols);
+
+	/**
+	 * Finds the longest match in a range of symbol IDs.
+	 *
+	 * @param symbolIds the symbol IDs
+	 * @param offset the index of the first symbol ID
+	 * @param length the number of symbol IDs
+	 * @return true if there is a match; otherwise false
+	 */
+	boolean matches(@Nonnull int[] symbolIds, int offset, int length);
+}
@@ -0,0 +1,78 @@
+package com.chalcodes.automata;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.chalcodes.automata.AbstractSymbolMatcher.NO_TRANSITION;
+
+/**
+ * Produces table-based matchers for automatons over arbitrary symbols.  The
+ * symbols are interned to dense IDs, and the transition table is a single
+ * {@code int} array indexed by state and symbol ID, so matching does not box
+ * or hash per step beyond one symbol lookup.
+ *
+ * @author Kevin Krumwiede
+ */
+public class SymbolMatchers {
+	private SymbolMatchers() {}
+
+	public static <S,T> SingleSemanticsSymbolMatcher<S,T> singleSemantics(@Nonnull final Automaton<S,T> automaton) {
+		automaton.checkCannibalized();
+		automaton.determinize();
+		final Map<State<S,T>, Integer> stateIds = automaton.getStateIds();
+		final List<S> symbols = getSymbols(stateIds);
+		final SymbolIndex<S> index = SymbolIndex.create(symbols);
+		final int[] transitions = getTransitionTable(stateIds, symbols, index);
+		final BitSet accepting = ByteMatchers.getAccepting(stateIds);
+		final List<T> semanticValues = ByteMatchers.getSingleSemanticValues(stateIds);
+		return new SingleSemanticsSymbolMatcher<>(index, transitions, symbols.size(), accepting, semanticValues);
+	}
+
+	public static <S,T> MultipleSemanticsSymbolMatcher<S,T> multipleSemantics(@Nonnull final Automaton<S,T> automaton) {
+		automaton.checkCannibalized();
+		automaton.determinize();
+		final Map<State<S,T>, Integer> stateIds = automaton.getStateIds();
+		final List<S> symbols = getSymbols(stateIds);
+		final SymbolIndex<S> index = SymbolIndex.create(symbols);
+		final int[] transitions = getTransitionTable(stateIds, symbols, index);
+		final BitSet accepting = ByteMatchers.getAccepting(stateIds);
+		final List<Set<T>> semanticValues = ByteMatchers.getMultipleSemanticValues(stateIds);
+		return new MultipleSemanticsSymbolMatcher<>(index, transitions, symbols.size(), accepting, semanticValues);
+	}
+
+	private static <S,T> List<S> getSymbols(@Nonnull final Map<State<S,T>, Integer> stateIds) {
+		final Set<S> symbols = new LinkedHashSet<>();
+		for(final State<S,T> state : stateIds.keySet()) {
+			state.getInputs(symbols);
+		}
+		return new ArrayList<>(symbols);
+	}
+
+	private static <S,T> int[] getTransitionTable(@Nonnull final Map<State<S,T>, Integer> stateIds,
+												  @Nonnull final List<S> symbols,
+												  @Nonnull final SymbolIndex<S> index) {
+		final int stride = symbols.size();
+		final int[] table = new int[stateIds.size() * stride];
+		Arrays.fill(table, NO_TRANSITION);
+		final Set<S> inputs = new HashSet<>();
+		for(final State<S,T> state : stateIds.keySet()) {
+			final int row = stateIds.get(state) * stride;
+			state.getInputs(inputs);
+			for(final S input : inputs) {
+				final State<S,T> transition = state.getTransition(input);
+				if(transition != null) {
+					table[row + index.indexOf(input)] = stateIds.get(transition);
+				}
+			}
+			inputs.clear();
+		}
+		return table;
+	}
+}
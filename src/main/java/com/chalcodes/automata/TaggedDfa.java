@@ -0,0 +1,356 @@
+package com.chalcodes.automata;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+
+/**
+ * The compiled tables of a tagged DFA.  Each state of the DFA stands for an
+ * ordered list of NFA states, each paired with the registers that hold the
+ * offsets of its capture tags.  Every transition carries a register
+ * operation that fills the registers of the target from the registers of
+ * the source or from the current offset, so captures are tracked in the
+ * same single pass that finds the match, without backtracking.
+ * <p>
+ * This is the construction described by Laurikari in "NFAs with Tagged
+ * Transitions, their Conversion to Deterministic Automata and Application
+ * to Regular Expressions" (2000), simplified so that tags are carried by
+ * states instead of by epsilon transitions.  Where several paths reach the
+ * same NFA state, the path found first wins.  Since epsilons are followed
+ * in the order they were added, that favors earlier alternatives and
+ * greedy repetition.
+ *
+ * @param <T> the type of semantic value associated with accepting states
+ * @author Kevin Krumwiede
+ */
+final class TaggedDfa<T> {
+	/** A register operation source meaning the current offset. */
+	static final int OFFSET = -1;
+	/** A final register meaning the tag was never entered. */
+	static final int UNSET = -1;
+	/** A tag value during construction meaning the current offset. */
+	private static final int NEW = -2;
+
+	/** The number of tags, two per group. */
+	final int mTags;
+	/** Maps each state and input to an edge. */
+	final ByteTable mTransitions;
+	/** The target of each edge. */
+	final int[] mEdgeTargets;
+	/** The register operation of each edge, indexed by target register. */
+	final int[][] mEdgeOps;
+	/** The number of registers of the initial state, all set to offset 0. */
+	final int mInitialRegisters;
+	/** The most registers of any state. */
+	final int mRegisters;
+	final BitSet mAccepting;
+	/** The register of each tag in each accepting state. */
+	final int[][] mFinalTags;
+	final List<T> mSemanticValues;
+
+	private TaggedDfa(final int tags,
+					  @Nonnull final ByteTable transitions,
+					  @Nonnull final int[] edgeTargets,
+					  @Nonnull final int[][] edgeOps,
+					  final int initialRegisters,
+					  final int registers,
+					  @Nonnull final BitSet accepting,
+					  @Nonnull final int[][] finalTags,
+					  @Nonnull final List<T> semanticValues) {
+		mTags = tags;
+		mTransitions = transitions;
+		mEdgeTargets = edgeTargets;
+		mEdgeOps = edgeOps;
+		mInitialRegisters = initialRegisters;
+		mRegisters = registers;
+		mAccepting = accepting;
+		mFinalTags = finalTags;
+		mSemanticValues = semanticValues;
+	}
+
+	/**
+	 * Compiles an automaton.  The automaton is not modified.
+	 *
+	 * @param automaton the automaton
+	 * @param <T> the type of semantic values
+	 * @return the compiled tables
+	 * @throws IllegalArgumentException if an accepting state would have
+	 * multiple semantic values
+	 */
+	static <T> TaggedDfa<T> compile(@Nonnull final Automaton<Byte,T> automaton) {
+		automaton.checkCannibalized();
+		final State<Byte,T> initial = automaton.getInitial();
+		int tags = 0;
+		for(final State<Byte,T> state : initial.findReachable()) {
+			tags = Math.max(tags, state.getTag() + 1);
+		}
+		/* Round up to whole groups. */
+		tags = (tags + 1) & ~1;
+		final int[] unset = new int[tags];
+		Arrays.fill(unset, UNSET);
+		final List<Item<T>> seeds = new ArrayList<>();
+		seeds.add(new Item<>(initial, unset));
+		final Canonical<T> start = canonicalize(closure(seeds));
+
+		final Map<Key<T>, Integer> ids = new HashMap<>();
+		final List<Key<T>> keys = new ArrayList<>();
+		final Queue<Key<T>> queue = new LinkedList<>();
+		ids.put(start.mKey, 0);
+		keys.add(start.mKey);
+		queue.add(start.mKey);
+		/* Edges are shared by all transitions with the same target and
+		 * operation. */
+		final Map<List<Integer>, Integer> edgeIds = new HashMap<>();
+		final List<Integer> edgeTargets = new ArrayList<>();
+		final List<int[]> edgeOps = new ArrayList<>();
+		final List<int[]> rows = new ArrayList<>();
+		int registers = start.mOps.length;
+		final Set<Byte> inputs = new HashSet<>();
+		final Set<State<Byte,T>> targets = new HashSet<>();
+		while(!queue.isEmpty()) {
+			final Key<T> key = queue.remove();
+			for(final State<Byte,T> state : key.mStates) {
+				state.getInputs(inputs);
+			}
+			final int[] row = new int[256];
+			Arrays.fill(row, ByteTable.NO_TRANSITION);
+			for(final Byte input : inputs) {
+				seeds.clear();
+				for(int i = 0; i < key.mStates.length; ++i) {
+					key.mStates[i].getTransitions(input, targets);
+					for(final State<Byte,T> target : targets) {
+						seeds.add(new Item<>(target, key.mRegisters[i]));
+					}
+					targets.clear();
+				}
+				final Canonical<T> next = canonicalize(closure(seeds));
+				Integer id = ids.get(next.mKey);
+				if(id == null) {
+					id = keys.size();
+					ids.put(next.mKey, id);
+					keys.add(next.mKey);
+					queue.add(next.mKey);
+				}
+				registers = Math.max(registers, next.mOps.length);
+				final List<Integer> edgeKey = new ArrayList<>(next.mOps.length + 1);
+				edgeKey.add(id);
+				for(final int op : next.mOps) {
+					edgeKey.add(op);
+				}
+				Integer edge = edgeIds.get(edgeKey);
+				if(edge == null) {
+					edge = edgeTargets.size();
+					edgeIds.put(edgeKey, edge);
+					edgeTargets.add(id);
+					edgeOps.add(next.mOps);
+				}
+				row[input & 0xFF] = edge;
+			}
+			inputs.clear();
+			rows.add(row);
+		}
+
+		final int states = keys.size();
+		/* The table holds edge IDs, not states, so it is never accelerated. */
+		final ByteTable.Builder table = new ByteTable.Builder(states, false);
+		for(int state = 0; state < states; ++state) {
+			final int[] row = rows.get(state);
+			for(int input = 0; input < 256; ++input) {
+				if(row[input] != ByteTable.NO_TRANSITION) {
+					table.add(state, input, row[input]);
+				}
+			}
+		}
+		final BitSet accepting = new BitSet(states);
+		final int[][] finalTags = new int[states][];
+		final List<T> semanticValues = new ArrayList<>(Collections.nCopies(states, (T) null));
+		final Set<T> set = new HashSet<>();
+		for(int state = 0; state < states; ++state) {
+			final Key<T> key = keys.get(state);
+			for(int i = 0; i < key.mStates.length; ++i) {
+				if(key.mStates[i].isAccepting()) {
+					/* The first accepting path supplies the captures. */
+					if(finalTags[state] == null) {
+						finalTags[state] = key.mRegisters[i];
+						accepting.set(state);
+					}
+					key.mStates[i].getSemanticValues(set);
+				}
+			}
+			if(set.size() > 1) {
+				throw new IllegalArgumentException("multiple semantics");
+			}
+			if(set.size() == 1) {
+				semanticValues.set(state, set.iterator().next());
+			}
+			set.clear();
+		}
+		final int[] targetArray = new int[edgeTargets.size()];
+		for(int i = 0; i < targetArray.length; ++i) {
+			targetArray[i] = edgeTargets.get(i);
+		}
+		return new TaggedDfa<>(tags,
+				table.build(),
+				targetArray,
+				edgeOps.toArray(new int[edgeOps.size()][]),
+				start.mOps.length,
+				registers,
+				accepting,
+				finalTags,
+				semanticValues);
+	}
+
+	int stateCount() {
+		return mFinalTags.length;
+	}
+
+	/**
+	 * Follows the epsilons from each seed in order, setting the tag of each
+	 * tagged state entered.  Each NFA state is kept only on the first path
+	 * that reaches it.
+	 */
+	private static <T> List<Item<T>> closure(@Nonnull final List<Item<T>> seeds) {
+		final List<Item<T>> items = new ArrayList<>();
+		final Map<State<Byte,T>, Boolean> seen = new IdentityHashMap<>();
+		final Deque<Item<T>> stack = new ArrayDeque<>();
+		final List<State<Byte,T>> epsilons = new ArrayList<>();
+		for(final Item<T> seed : seeds) {
+			stack.push(seed);
+			while(!stack.isEmpty()) {
+				final Item<T> item = stack.pop();
+				if(seen.put(item.mState, Boolean.TRUE) != null) {
+					continue;
+				}
+				int[] values = item.mValues;
+				final int tag = item.mState.getTag();
+				if(tag != State.NO_TAG) {
+					values = values.clone();
+					values[tag] = NEW;
+				}
+				items.add(new Item<>(item.mState, values));
+				/* Push in reverse so the first epsilon is followed first. */
+				epsilons.addAll(item.mState.getEpsilons());
+				for(int i = epsilons.size() - 1; i >= 0; --i) {
+					if(!seen.containsKey(epsilons.get(i))) {
+						stack.push(new Item<>(epsilons.get(i), values));
+					}
+				}
+				epsilons.clear();
+			}
+		}
+		return items;
+	}
+
+	/**
+	 * Renames the values of the items to registers numbered in order of
+	 * first appearance, recording where each register is filled from.
+	 */
+	private static <T> Canonical<T> canonicalize(@Nonnull final List<Item<T>> items) {
+		final Map<Integer, Integer> registers = new HashMap<>();
+		final List<Integer> ops = new ArrayList<>();
+		@SuppressWarnings({"unchecked", "rawtypes"})
+		final State<Byte,T>[] states = new State[items.size()];
+		final int[][] mapped = new int[items.size()][];
+		for(int i = 0; i < states.length; ++i) {
+			final Item<T> item = items.get(i);
+			states[i] = item.mState;
+			mapped[i] = new int[item.mValues.length];
+			for(int tag = 0; tag < item.mValues.length; ++tag) {
+				final int value = item.mValues[tag];
+				if(value == UNSET) {
+					mapped[i][tag] = UNSET;
+				}
+				else {
+					Integer register = registers.get(value);
+					if(register == null) {
+						register = ops.size();
+						registers.put(value, register);
+						ops.add(value == NEW ? OFFSET : value);
+					}
+					mapped[i][tag] = register;
+				}
+			}
+		}
+		final int[] opArray = new int[ops.size()];
+		for(int i = 0; i < opArray.length; ++i) {
+			opArray[i] = ops.get(i);
+		}
+		return new Canonical<>(new Key<>(states, mapped), opArray);
+	}
+
+	/** An NFA state and the values of its tags. */
+	private static class Item<T> {
+		final State<Byte,T> mState;
+		final int[] mValues;
+
+		Item(@Nonnull final State<Byte,T> state, @Nonnull final int[] values) {
+			mState = state;
+			mValues = values;
+		}
+	}
+
+	/** A DFA state and the operation that fills its registers. */
+	private static class Canonical<T> {
+		final Key<T> mKey;
+		final int[] mOps;
+
+		Canonical(@Nonnull final Key<T> key, @Nonnull final int[] ops) {
+			mKey = key;
+			mOps = ops;
+		}
+	}
+
+	/**
+	 * Identifies a DFA state by its ordered NFA states and their registers.
+	 * NFA states are compared by identity.
+	 */
+	private static class Key<T> {
+		final State<Byte,T>[] mStates;
+		final int[][] mRegisters;
+		private final int mHash;
+
+		Key(@Nonnull final State<Byte,T>[] states, @Nonnull final int[][] registers) {
+			mStates = states;
+			mRegisters = registers;
+			int hash = Arrays.deepHashCode(registers);
+			for(final State<Byte,T> state : states) {
+				hash = 31 * hash + System.identityHashCode(state);
+			}
+			mHash = hash;
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			if(!(obj instanceof Key)) {
+				return false;
+			}
+			final Key<?> other = (Key<?>) obj;
+			if(mHash != other.mHash || mStates.length != other.mStates.length) {
+				return false;
+			}
+			for(int i = 0; i < mStates.length; ++i) {
+				if(mStates[i] != other.mStates[i]) {
+					return false;
+				}
+			}
+			return Arrays.deepEquals(mRegisters, other.mRegisters);
+		}
+
+		@Override
+		public int hashCode() {
+			return mHash;
+		}
+	}
+}
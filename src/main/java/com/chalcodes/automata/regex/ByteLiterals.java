@@ -0,0 +1,44 @@
+package com.chalcodes.automata.regex;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Encodes literal characters as sequences of bytes.
+ *
+ * @author Kevin Krumwiede
+ */
+class ByteLiterals extends Literals<Byte> {
+	private final CharsetEncoder mEncoder;
+	private final ByteBuffer mOutput;
+
+	ByteLiterals(@Nonnull final Charset charset, final int flags) {
+		super(flags);
+		mEncoder = charset.newEncoder();
+		mOutput = ByteBuffer.allocate(2 * (int) Math.ceil(mEncoder.maxBytesPerChar()));
+	}
+
+	@Override
+	@Nullable List<Byte> encode(@Nonnull final CharBuffer chars, final boolean required) {
+		mOutput.clear();
+		mEncoder.reset();
+		final CoderResult result = mEncoder.encode(chars, mOutput, true);
+		if(result.isError() && !required) {
+			return null;
+		}
+		mEncoder.flush(mOutput);
+		mOutput.flip();
+		final List<Byte> bytes = new ArrayList<>(mOutput.remaining());
+		while(mOutput.hasRemaining()) {
+			bytes.add(mOutput.get());
+		}
+		return bytes;
+	}
+}
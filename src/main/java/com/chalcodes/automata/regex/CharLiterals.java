@@ -0,0 +1,27 @@
+package com.chalcodes.automata.regex;
+
+import javax.annotation.Nonnull;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Represents literal characters as UTF-16 code units.  A supplementary
+ * character becomes the sequence of its surrogate pair.
+ *
+ * @author Kevin Krumwiede
+ */
+class CharLiterals extends Literals<Character> {
+	CharLiterals(final int flags) {
+		super(flags);
+	}
+
+	@Override
+	List<Character> encode(@Nonnull final CharBuffer chars, final boolean required) {
+		final List<Character> units = new ArrayList<>(2);
+		while(chars.hasRemaining()) {
+			units.add(chars.get());
+		}
+		return units;
+	}
+}
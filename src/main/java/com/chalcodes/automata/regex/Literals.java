@@ -0,0 +1,145 @@
+package com.chalcodes.automata.regex;
+
+import com.chalcodes.automata.Automaton;
+import com.chalcodes.automata.Automatons;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Creates automatons for the literal characters of a regular expression.
+ * Each compile target of the parser has its own implementation.
+ *
+ * @param <S> the type of symbol recognized by the automatons
+ * @author Kevin Krumwiede
+ */
+abstract class Literals<S> {
+	private final int mFlags;
+	private final CharBuffer mInput = CharBuffer.allocate(2);
+
+	Literals(final int flags) {
+		mFlags = flags;
+	}
+
+	/**
+	 * Creates an automaton that recognizes the next character of a regular
+	 * expression, or the next two if they are a surrogate pair.  If case is
+	 * ignored, the automaton recognizes every case of the character.
+	 *
+	 * @param iter the iterator positioned at the character
+	 * @param <T> the type of semantic values
+	 * @return the automaton
+	 */
+	@Nonnull <T> Automaton<S,T> next(@Nonnull final RegexIterator iter) {
+		mInput.clear();
+		iter.next(mInput);
+		mInput.flip();
+		if((mFlags & Regex.CASE_INSENSITIVE) == 0) {
+			return Automatons.sequence(encode(mInput, true));
+		}
+		final int codePoint = Character.codePointAt(mInput, 0);
+		final List<List<S>> variants = new ArrayList<>();
+		variants.add(encode(mInput, true));
+		for(final int variant : getCaseVariants(codePoint)) {
+			final CharBuffer chars = CharBuffer.wrap(Character.toChars(variant));
+			final List<S> symbols = encode(chars, false);
+			if(symbols != null && !variants.contains(symbols)) {
+				variants.add(symbols);
+			}
+		}
+		return fold(variants);
+	}
+
+	/**
+	 * Encodes one character.
+	 *
+	 * @param chars the character, or the two halves of a surrogate pair
+	 * @param required true if the character is from the expression itself;
+	 * false if it is a case variant that may be skipped
+	 * @return the symbols, or null if the character is an unencodable
+	 * variant
+	 */
+	@Nullable abstract List<S> encode(@Nonnull CharBuffer chars, boolean required);
+
+	/**
+	 * Gets the other cases of a character.  Without
+	 * {@link Regex#UNICODE_CASE}, only ASCII letters have other cases.
+	 */
+	private Set<Integer> getCaseVariants(final int codePoint) {
+		final Set<Integer> variants = new LinkedHashSet<>();
+		if((mFlags & Regex.UNICODE_CASE) != 0) {
+			final int upper = Character.toUpperCase(codePoint);
+			final int lower = Character.toLowerCase(codePoint);
+			variants.add(upper);
+			variants.add(lower);
+			variants.add(Character.toTitleCase(codePoint));
+			variants.add(Character.toLowerCase(upper));
+			variants.add(Character.toUpperCase(lower));
+		}
+		else if(codePoint < 0x80 && Character.isLetter(codePoint)) {
+			variants.add(Character.toUpperCase(codePoint));
+			variants.add(Character.toLowerCase(codePoint));
+		}
+		variants.remove(codePoint);
+		return variants;
+	}
+
+	/**
+	 * Creates an automaton that recognizes any of several sequences.  Where
+	 * the sequences differ only in their first symbol, the first symbols
+	 * become one set transition, so a folded ASCII letter is a single
+	 * transition on two bytes instead of a union.
+	 */
+	static <S,T> Automaton<S,T> fold(@Nonnull final List<List<S>> sequences) {
+		final Map<S, List<List<S>>> byFirst = new LinkedHashMap<>();
+		boolean empty = false;
+		for(final List<S> sequence : sequences) {
+			if(sequence.isEmpty()) {
+				empty = true;
+				continue;
+			}
+			List<List<S>> rests = byFirst.get(sequence.get(0));
+			if(rests == null) {
+				rests = new ArrayList<>();
+				byFirst.put(sequence.get(0), rests);
+			}
+			rests.add(sequence.subList(1, sequence.size()));
+		}
+		Automaton<S,T> folded = null;
+		if(!byFirst.isEmpty()) {
+			/* If every first symbol leads to the same rests, share them. */
+			final List<List<S>> firstRests = byFirst.values().iterator().next();
+			boolean shared = true;
+			for(final List<List<S>> rests : byFirst.values()) {
+				if(!new LinkedHashSet<>(rests).equals(new LinkedHashSet<>(firstRests))) {
+					shared = false;
+					break;
+				}
+			}
+			if(shared) {
+				folded = Automatons.set(byFirst.keySet());
+				if(firstRests.size() > 1 || !firstRests.get(0).isEmpty()) {
+					folded.concat(Literals.<S,T>fold(firstRests));
+				}
+			}
+			else {
+				for(final Map.Entry<S, List<List<S>>> entry : byFirst.entrySet()) {
+					final Automaton<S,T> branch = Automatons.<S,T>symbol(entry.getKey())
+							.concat(Literals.<S,T>fold(entry.getValue()));
+					folded = folded == null ? branch : folded.union(branch);
+				}
+			}
+		}
+		if(empty) {
+			folded = folded == null ? Automatons.<S,T>empty() : folded.optional();
+		}
+		return folded;
+	}
+}
@@ -0,0 +1,156 @@
+package com.chalcodes.automata.regex;
+
+import com.chalcodes.automata.Automaton;
+import com.chalcodes.automata.Automatons;
+import com.chalcodes.automata.ByteMatchers;
+import com.chalcodes.automata.CompiledMatchers;
+import com.chalcodes.automata.Priorities;
+import com.chalcodes.automata.SingleSemanticsByteMatcher;
+
+import javax.annotation.Nonnull;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Compiles pattern files into byte matchers.  The tables of the matcher can
+ * be saved with {@link CompiledMatchers} and packaged as a resource.
+ * <p>
+ * A pattern file has one rule per line in the form {@code name = regex}.
+ * The name becomes the semantic value of the rule.  Where rules match the
+ * same input, the rule whose name appears first in the file wins.  Blank
+ * lines and lines beginning with {@code #} are ignored.  Whitespace around
+ * the name and the expression is removed.
+ * <p>
+ * {@link #compileAll(File, File, Charset, Charset)} compiles a directory
+ * of pattern files when a project is built.  Each {@code .patterns} file is compiled to a
+ * {@code .dfa} file at the same relative path under the output directory,
+ * where the application loads it with
+ * {@link CompiledMatchers#load(ClassLoader, String)}.
+ *
+ * @author Kevin Krumwiede
+ */
+public class PatternFiles {
+	private PatternFiles() {}
+
+	/** The suffix of pattern files. */
+	public static final String SOURCE_SUFFIX = ".patterns";
+	/** The suffix of compiled tables. */
+	public static final String OUTPUT_SUFFIX = ".dfa";
+
+	/**
+	 * Compiles each pattern file under a directory to a table at the same
+	 * relative path under another directory.  A pattern file is skipped if
+	 * its table is newer than it is.  A missing source directory is not an
+	 * error.
+	 *
+	 * @param source the directory of pattern files
+	 * @param output the directory of tables
+	 * @param fileCharset the encoding of the pattern files
+	 * @param charset the encoding the matchers will recognize
+	 * @return the number of pattern files compiled
+	 * @throws IOException if a file cannot be read or written
+	 * @throws IllegalArgumentException if a pattern file is malformed
+	 */
+	public static int compileAll(@Nonnull final File source,
+								 @Nonnull final File output,
+								 @Nonnull final Charset fileCharset,
+								 @Nonnull final Charset charset) throws IOException {
+		if(!source.isDirectory()) {
+			return 0;
+		}
+		final File[] files = source.listFiles();
+		if(files == null) {
+			throw new IOException("cannot list " + source);
+		}
+		int compiled = 0;
+		for(final File file : files) {
+			final String name = file.getName();
+			if(file.isDirectory()) {
+				compiled += compileAll(file, new File(output, name), fileCharset, charset);
+			}
+			else if(name.endsWith(SOURCE_SUFFIX)) {
+				final String base = name.substring(0, name.length() - SOURCE_SUFFIX.length());
+				final File target = new File(output, base + OUTPUT_SUFFIX);
+				if(target.lastModified() <= file.lastModified()) {
+					compile(file, target, fileCharset, charset);
+					++compiled;
+				}
+			}
+		}
+		return compiled;
+	}
+
+	private static void compile(@Nonnull final File source,
+								@Nonnull final File target,
+								@Nonnull final Charset fileCharset,
+								@Nonnull final Charset charset) throws IOException {
+		final SingleSemanticsByteMatcher<String> matcher;
+		try(final Reader reader = new InputStreamReader(new FileInputStream(source), fileCharset)) {
+			matcher = compile(reader, charset);
+		}
+		catch(final IllegalArgumentException e) {
+			throw new IllegalArgumentException(source + ": " + e.getMessage(), e);
+		}
+		final File parent = target.getParentFile();
+		if(!parent.isDirectory() && !parent.mkdirs()) {
+			throw new IOException("cannot create " + parent);
+		}
+		try(final OutputStream out = new BufferedOutputStream(new FileOutputStream(target))) {
+			CompiledMatchers.write(matcher, out);
+		}
+	}
+
+	/**
+	 * Compiles a pattern file.
+	 *
+	 * @param patterns the pattern file
+	 * @param charset the encoding the matcher will recognize
+	 * @return the matcher
+	 * @throws IOException if the pattern file cannot be read
+	 * @throws IllegalArgumentException if a line is malformed
+	 */
+	public static SingleSemanticsByteMatcher<String> compile(@Nonnull final Reader patterns,
+															 @Nonnull final Charset charset) throws IOException {
+		final BufferedReader reader = new BufferedReader(patterns);
+		final List<Automaton<Byte,String>> rules = new ArrayList<>();
+		final List<String> names = new ArrayList<>();
+		int lineNumber = 0;
+		String line;
+		while((line = reader.readLine()) != null) {
+			++lineNumber;
+			final String trimmed = line.trim();
+			if(trimmed.isEmpty() || trimmed.startsWith("#")) {
+				continue;
+			}
+			final int equals = trimmed.indexOf('=');
+			if(equals < 1) {
+				throw new IllegalArgumentException("line " + lineNumber + ": expected name = regex");
+			}
+			final String name = trimmed.substring(0, equals).trim();
+			final String regex = trimmed.substring(equals + 1).trim();
+			try {
+				rules.add(Regex.<String>parse(regex, charset));
+			}
+			catch(final ParseException e) {
+				throw new IllegalArgumentException("line " + lineNumber + ": " + e.getMessage() +
+						" at position " + e.getPosition(), e);
+			}
+			names.add(name);
+		}
+		final Set<String> priority = new LinkedHashSet<>(names);
+		final Automaton<Byte,String> union = Automatons.unionAll(rules, names);
+		return ByteMatchers.singleSemantics(union, Priorities.byOrder(new ArrayList<>(priority)));
+	}
+}
@@ -4,10 +4,7 @@ import com.chalcodes.automata.Automaton;
 import com.chalcodes.automata.Automatons;
 
 import javax.annotation.Nonnull;
-import java.nio.ByteBuffer;
-import java.nio.CharBuffer;
 import java.nio.charset.Charset;
-import java.nio.charset.CharsetEncoder;
 
 /**
  * Parses regular expressions.
@@ -17,9 +14,24 @@ import java.nio.charset.CharsetEncoder;
 public class Regex {
 	private Regex() {}
 
+	/**
+	 * Matches letters without regard to case.  By default only ASCII
+	 * letters are folded.  Each folded character becomes a single transition
+	 * on a set of symbols where its encodings allow it, so folding does not
+	 * enlarge the automaton.
+	 */
+	public static final int CASE_INSENSITIVE = 0x01;
+	/**
+	 * With {@link #CASE_INSENSITIVE}, folds the case of all Unicode letters.
+	 * Case variants that the target charset cannot encode are ignored.
+	 */
+	public static final int UNICODE_CASE = 0x02;
+
 	/**
 	 * Parses a regular expression.  The character set must produce encoders
-	 * that do not write a byte order mark.
+	 * that do not write a byte order mark.  Parenthesized groups capture,
+	 * numbered from 1 in the order of their opening parentheses, unless they
+	 * open with "(?:".
 	 *
 	 * @param regex the regular expression
 	 * @param charset the encoding the resulting automaton will recognize
@@ -28,53 +40,92 @@ public class Regex {
 	 */
 	@Nonnull public static <T> Automaton<Byte, T> parse(@Nonnull final CharSequence regex,
 														@Nonnull final Charset charset) {
+		return parse(regex, charset, 0);
+	}
+
+	/**
+	 * Parses a regular expression with flags.
+	 *
+	 * @param regex the regular expression
+	 * @param charset the encoding the resulting automaton will recognize
+	 * @param flags {@link #CASE_INSENSITIVE} and {@link #UNICODE_CASE}, or 0
+	 * @param <T> the type of semantic values associated with accepting states
+	 * @return an automaton corresponding to the regular expression
+	 * @see #parse(CharSequence, Charset)
+	 */
+	@Nonnull public static <T> Automaton<Byte, T> parse(@Nonnull final CharSequence regex,
+														@Nonnull final Charset charset,
+														final int flags) {
+		return parse(regex, new ByteLiterals(charset, flags));
+	}
+
+	/**
+	 * Parses a regular expression into an automaton that recognizes UTF-16
+	 * code units.  Supplementary characters are recognized as surrogate
+	 * pairs.
+	 *
+	 * @param regex the regular expression
+	 * @param <T> the type of semantic values associated with accepting states
+	 * @return an automaton corresponding to the regular expression
+	 */
+	@Nonnull public static <T> Automaton<Character, T> parse(@Nonnull final CharSequence regex) {
+		return parse(regex, 0);
+	}
+
+	/**
+	 * Parses a regular expression with flags into an automaton that
+	 * recognizes UTF-16 code units.
+	 *
+	 * @param regex the regular expression
+	 * @param flags {@link #CASE_INSENSITIVE} and {@link #UNICODE_CASE}, or 0
+	 * @param <T> the type of semantic values associated with accepting states
+	 * @return an automaton corresponding to the regular expression
+	 * @see #parse(CharSequence)
+	 */
+	@Nonnull public static <T> Automaton<Character, T> parse(@Nonnull final CharSequence regex, final int flags) {
+		return parse(regex, new CharLiterals(flags));
+	}
+
+	@Nonnull private static <S,T> Automaton<S,T> parse(@Nonnull final CharSequence regex,
+													   @Nonnull final Literals<S> literals) {
 		final RegexIterator iter = new RegexIterator(regex);
-		final CharsetEncoder encoder = charset.newEncoder();
-		final CharBuffer input = CharBuffer.allocate(2);
-		final ByteBuffer output = ByteBuffer.allocate((int) Math.ceil(encoder.maxBytesPerChar()));
-		final Automaton<Byte, T> parsed = expr(iter, encoder, input, output);
+		final Automaton<S,T> parsed = expr(iter, literals);
 		if(iter.hasNext()) {
-			throw new ParseException("unexpected character", input.position());
+			throw new ParseException("unexpected character", iter.position());
 		}
 		return parsed;
 	}
 
-	@Nonnull private static <T> Automaton<Byte,T> expr(final RegexIterator iter,
-													   final CharsetEncoder encoder,
-													   final CharBuffer input,
-													   final ByteBuffer output) {
+	@Nonnull private static <S,T> Automaton<S,T> expr(final RegexIterator iter,
+													  final Literals<S> literals) {
 		/* An expression is the union of one or more terms. */
-		final Automaton<Byte, T> expr = term(iter, encoder, input, output);
+		final Automaton<S,T> expr = term(iter, literals);
 		while(iter.hasNext() && iter.peek() == '|') {
-			input.get();
-			expr.union(Regex.<T>term(iter, encoder, input, output));
+			iter.skip();
+			expr.union(Regex.<S,T>term(iter, literals));
 		}
 		return expr;
 	}
 
-	@Nonnull private static <T> Automaton<Byte,T> term(final RegexIterator iter,
-													   final CharsetEncoder encoder,
-													   final CharBuffer input,
-													   final ByteBuffer output) {
+	@Nonnull private static <S,T> Automaton<S,T> term(final RegexIterator iter,
+													  final Literals<S> literals) {
 		/* A term is the concatenation of zero or more factors. */
-		final Automaton<Byte, T> term = Automatons.empty();
+		final Automaton<S,T> term = Automatons.empty();
 		while(iter.hasNext()) {
 			final char next = iter.peek();
 			if(next == '|' || next == ')') {
 				break;
 			}
-			term.concat(Regex.<T>factor(iter, encoder, input, output));
+			term.concat(Regex.<S,T>factor(iter, literals));
 		}
 		return term;
 	}
 
-	@Nonnull private static <T> Automaton<Byte,T> factor(final RegexIterator iter,
-														 final CharsetEncoder encoder,
-														 final CharBuffer input,
-														 final ByteBuffer output) {
+	@Nonnull private static <S,T> Automaton<S,T> factor(final RegexIterator iter,
+														final Literals<S> literals) {
 		/* A factor is a base followed by zero or one quantifiers. */
 		// TODO zero or more quantifiers?
-		final Automaton<Byte, T> factor = base(iter, encoder, input, output);
+		final Automaton<S,T> factor = base(iter, literals);
 		/* A quantifier is '*', '+', '?', or "{m,n}". */
 		if(iter.hasNext()) {
 			switch(iter.peek()) {
@@ -96,18 +147,25 @@ public class Regex {
 		return factor;
 	}
 
-	@Nonnull private static <T> Automaton<Byte,T> base(final RegexIterator iter,
-													   final CharsetEncoder encoder,
-													   final CharBuffer input,
-													   final ByteBuffer output) {
+	@Nonnull private static <S,T> Automaton<S,T> base(final RegexIterator iter,
+													  final Literals<S> literals) {
 		/* A base is a literal character, an escaped character, a set of
 		 * characters, or a parenthesized expression. */
 		switch(iter.peek()) {
 			case '(':
 				iter.skip();
-				final Automaton<Byte, T> base = expr(iter, encoder, input, output);
+				/* "(?:" opens a group that does not capture. */
+				if(iter.hasNext() && iter.peek() == '?') {
+					iter.skip();
+					iter.require(':');
+					final Automaton<S,T> base = expr(iter, literals);
+					iter.require(')');
+					return base;
+				}
+				final int group = iter.nextGroup();
+				final Automaton<S,T> base = expr(iter, literals);
 				iter.require(')');
-				return base;
+				return base.capture(group);
 			case '\\':
 				iter.skip();
 				switch(iter.peek()) {
@@ -126,15 +184,7 @@ public class Regex {
 						throw new ParseException("unexpected character", iter.position());
 				}
 			default:
-				input.clear();
-				iter.next(input);
-				input.flip();
-				output.clear();
-				encoder.reset();
-				encoder.encode(input, output, true);
-				encoder.flush(output);
-				output.flip();
-				return Automatons.sequence(output);
+				return literals.next(iter);
 		}
 	}
 }
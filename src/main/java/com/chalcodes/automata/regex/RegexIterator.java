@@ -11,6 +11,7 @@ import java.nio.CharBuffer;
  */
 class RegexIterator {
 	private final CharBuffer mBuffer;
+	private int mGroups;
 
 	RegexIterator(@Nonnull final CharSequence regex) {
 		mBuffer = CharBuffer.wrap(regex);
@@ -25,6 +26,16 @@ class RegexIterator {
 		return mBuffer.position();
 	}
 
+	/**
+	 * Numbers the next capture group.  Groups are numbered from 1 in the
+	 * order of their opening parentheses.
+	 *
+	 * @return the group number
+	 */
+	int nextGroup() {
+		return ++mGroups;
+	}
+
 	/**
 	 * Tests whether this iterator has more characters.
 	 *
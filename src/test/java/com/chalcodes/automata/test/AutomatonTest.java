@@ -2,17 +2,25 @@ package com.chalcodes.automata.test;
 
 import com.chalcodes.automata.Automaton;
 import com.chalcodes.automata.Automatons;
+import com.chalcodes.automata.TransitionLabeler;
 import org.junit.Test;
 
+import javax.annotation.Nonnull;
+import java.io.IOException;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
 
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class AutomatonTest {
 
@@ -42,6 +50,53 @@ public class AutomatonTest {
 		assertTrue(Collections.disjoint(aReachable, bReachable));
 	}
 
+	@Test
+	public void graphVizMergesRangesAndTruncates() throws IOException {
+		final Automaton<Byte, Void> a = Automatons.set(Arrays.asList((byte) 'a', (byte) 'b', (byte) 'c', (byte) 'x'));
+		a.concat(Automatons.<Void>sequence(ByteBuffer.wrap("0123456789".getBytes(StandardCharsets.ISO_8859_1))));
+		final StringBuilder sb = new StringBuilder();
+		a.writeGraphViz(sb, "test", new TransitionLabeler<Byte>() {
+			@Override
+			public String getLabel(@Nonnull final Byte input) {
+				return Character.toString((char) input.byteValue());
+			}
+		}, 4);
+		final String dot = sb.toString();
+		assertTrue(dot.contains("[label=\"a-c, x\"]"));
+		assertTrue(dot.contains("more [label="));
+		assertFalse(dot.contains("\t4 ["));
+	}
+
+	@Test
+	public void graphVizEscapesLabels() throws IOException {
+		final Automaton<Byte, String> a = Automatons.set(Arrays.asList((byte) '\\', (byte) '"'));
+		a.addSemanticValue("a\\b");
+		final StringBuilder sb = new StringBuilder();
+		a.writeGraphViz(sb, "test", new TransitionLabeler<Byte>() {
+			@Override
+			public String getLabel(@Nonnull final Byte input) {
+				return Character.toString((char) input.byteValue());
+			}
+		}, 10);
+		final String dot = sb.toString();
+		assertTrue(dot.contains("[label=\"\\\", \\\\\"]"));
+		assertTrue(dot.contains("\\na\\\\b\""));
+	}
+
+	@Test
+	public void tryDeterminizeBudget() {
+		final Automaton<String, Void> a = Automatons.sequence(FOO_ETC);
+		try {
+			a.tryDeterminize(0);
+			fail();
+		}
+		catch(IllegalArgumentException expected) {
+			/* A DFA has at least one state. */
+		}
+		assertFalse(a.tryDeterminize(1));
+		assertTrue(a.tryDeterminize(4));
+	}
+
 //	@Test
 //	public void graphViz() {
 //		Automaton<String, Void> a = Automatons.sequence(FOO_ETC);
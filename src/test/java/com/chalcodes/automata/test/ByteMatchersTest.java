@@ -1,16 +1,54 @@
 package com.chalcodes.automata.test;
 
 import com.chalcodes.automata.Automaton;
+import com.chalcodes.automata.Automatons;
+import com.chalcodes.automata.BatchMatcher;
+import com.chalcodes.automata.BuildReport;
+import com.chalcodes.automata.ByteReplacer;
 import com.chalcodes.automata.ByteMatchers;
+import com.chalcodes.automata.DictionaryBuilder;
+import com.chalcodes.automata.IncrementalScanner;
+import com.chalcodes.automata.MatchCounters;
+import com.chalcodes.automata.MatchMode;
+import com.chalcodes.automata.MatchTally;
+import com.chalcodes.automata.MatcherHolder;
+import com.chalcodes.automata.PartitionedByteMatcher;
+import com.chalcodes.automata.Priorities;
+import com.chalcodes.automata.SemanticCombination;
 import com.chalcodes.automata.SingleSemanticsByteMatcher;
+import com.chalcodes.automata.SingleSemanticsNfaByteMatcher;
+import com.chalcodes.automata.StateProfile;
 import com.chalcodes.automata.regex.Regex;
 import org.junit.Test;
 
+import javax.annotation.Nonnull;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class ByteMatchersTest {
 
@@ -25,4 +63,663 @@ public class ByteMatchersTest {
 		assertEquals("FOO", m.semanticValue());
 	}
 
-}
\ No newline at end of file
+	@Test
+	public void backwardMatcher() {
+		final Automaton<Byte,String> a = Regex.parse(".txt", StandardCharsets.ISO_8859_1);
+		a.addSemanticValue("TXT");
+		final Automaton<Byte,String> b = Regex.parse(".md", StandardCharsets.ISO_8859_1);
+		b.addSemanticValue("MD");
+		a.union(b);
+		SingleSemanticsByteMatcher<String> m = ByteMatchers.singleSemanticsBackward(a);
+		final ByteBuffer input = ByteBuffer.wrap("notes.md".getBytes(StandardCharsets.ISO_8859_1));
+		assertTrue(m.matches(input));
+		assertEquals(3, m.length());
+		assertEquals("MD", m.semanticValue());
+		input.limit(6);
+		assertFalse(m.matches(input));
+	}
+
+	@Test
+	public void reversedUnionStaysSmall() {
+		final List<Automaton<Byte,String>> rules = new ArrayList<>();
+		final List<String> names = new ArrayList<>();
+		for(int i = 0; i < 50; ++i) {
+			rules.add(Regex.<String>parse("token" + i, StandardCharsets.ISO_8859_1));
+			names.add("T" + i);
+		}
+		final Automaton<Byte,String> union = Automatons.unionAll(rules, names);
+		final int states = union.stateCount();
+		/* Each group copies only its own branch, not the whole union. */
+		assertTrue(union.copy().reverse().stateCount() < 2 * states);
+		final SingleSemanticsByteMatcher<String> m = ByteMatchers.singleSemanticsBackward(union);
+		assertTrue(m.matches(ByteBuffer.wrap("xtoken42".getBytes(StandardCharsets.ISO_8859_1))));
+		assertEquals("T42", m.semanticValue());
+	}
+
+	@Test
+	public void allowMinusDeny() {
+		final Automaton<Byte,String> allow = Regex.parse("a(b)+", StandardCharsets.ISO_8859_1);
+		allow.addSemanticValue("ALLOW");
+		final Automaton<Byte,String> deny = Regex.parse("abb", StandardCharsets.ISO_8859_1);
+		allow.minus(deny);
+		SingleSemanticsByteMatcher<String> m = ByteMatchers.singleSemantics(allow);
+		assertTrue(m.matches(ByteBuffer.wrap("ab;".getBytes(StandardCharsets.ISO_8859_1))));
+		assertEquals(2, m.length());
+		assertEquals("ALLOW", m.semanticValue());
+		assertTrue(m.matches(ByteBuffer.wrap("abb;".getBytes(StandardCharsets.ISO_8859_1))));
+		assertEquals(2, m.length());
+		assertTrue(m.matches(ByteBuffer.wrap("abbb;".getBytes(StandardCharsets.ISO_8859_1))));
+		assertEquals(4, m.length());
+	}
+
+	@Test
+	public void intersection() {
+		final Automaton<Byte,String> a = Regex.parse("a(b)+", StandardCharsets.ISO_8859_1);
+		a.addSemanticValue("A");
+		final Automaton<Byte,String> b = Regex.parse("(ab)+b", StandardCharsets.ISO_8859_1);
+		b.addSemanticValue("B");
+		a.intersect(b, SemanticCombination.RIGHT);
+		SingleSemanticsByteMatcher<String> m = ByteMatchers.singleSemantics(a);
+		assertTrue(m.matches(ByteBuffer.wrap("abbbb".getBytes(StandardCharsets.ISO_8859_1))));
+		assertEquals(3, m.length());
+		assertEquals("B", m.semanticValue());
+	}
+
+	@Test
+	public void complement() {
+		final Automaton<Byte,String> a = Regex.parse("ab", StandardCharsets.ISO_8859_1);
+		a.complement(Arrays.asList((byte) 'a', (byte) 'b', (byte) 'c'));
+		/* The three states of "ab" and the dead state. */
+		assertEquals(4, a.stateCount());
+		SingleSemanticsByteMatcher<String> m = ByteMatchers.singleSemantics(a);
+		m.setMatchMode(MatchMode.FULL);
+		assertTrue(m.matches(ByteBuffer.wrap("ba".getBytes(StandardCharsets.ISO_8859_1))));
+		assertEquals(2, m.length());
+		assertFalse(m.matches(ByteBuffer.wrap("ab".getBytes(StandardCharsets.ISO_8859_1))));
+		/* These leave the transitions of "ab" and end in the dead state,
+		 * which accepts and loops on the whole alphabet. */
+		for(final String input : Arrays.asList("c", "abc", "abca", "cab", "aa")) {
+			assertTrue(input, m.matches(ByteBuffer.wrap(input.getBytes(StandardCharsets.ISO_8859_1))));
+			assertEquals(input.length(), m.length());
+			assertNull(m.semanticValue());
+		}
+	}
+
+	@Test
+	public void nfaMatcher() {
+		final Automaton<Byte,String> a = Regex.parse("(ab)+", StandardCharsets.ISO_8859_1);
+		a.addSemanticValue("FOO");
+		final Automaton<Byte,String> b = Regex.parse("(ab)+c", StandardCharsets.ISO_8859_1);
+		b.addSemanticValue("BAR");
+		a.union(b);
+		final Automaton<Byte,String> c = Regex.parse("abab", StandardCharsets.ISO_8859_1);
+		c.addSemanticValue("BAZ");
+		a.union(c);
+		final SingleSemanticsNfaByteMatcher<String> n = ByteMatchers.singleSemanticsNfa(a);
+		assertTrue(n.matches(ByteBuffer.wrap("abx".getBytes(StandardCharsets.ISO_8859_1))));
+		assertEquals("FOO", n.semanticValue());
+		assertTrue(n.matches(ByteBuffer.wrap("abcx".getBytes(StandardCharsets.ISO_8859_1))));
+		assertEquals("BAR", n.semanticValue());
+		assertTrue(n.matches(ByteBuffer.wrap("ababx".getBytes(StandardCharsets.ISO_8859_1))));
+		try {
+			n.semanticValue();
+			fail();
+		}
+		catch(IllegalStateException expected) {
+			/* FOO and BAZ both accept here and there is no priority. */
+		}
+		final SingleSemanticsNfaByteMatcher<String> m =
+				ByteMatchers.singleSemanticsNfa(a, Priorities.byOrder(Arrays.asList("BAZ", "BAR", "FOO")));
+		assertTrue(m.matches(ByteBuffer.wrap("ababx".getBytes(StandardCharsets.ISO_8859_1))));
+		assertEquals(4, m.length());
+		assertEquals("BAZ", m.semanticValue());
+		assertTrue(m.matches(ByteBuffer.wrap("abx".getBytes(StandardCharsets.ISO_8859_1))));
+		assertEquals(2, m.length());
+		assertEquals("FOO", m.semanticValue());
+		assertTrue(m.matches(ByteBuffer.wrap("abcx".getBytes(StandardCharsets.ISO_8859_1))));
+		assertEquals(3, m.length());
+		assertEquals("BAR", m.semanticValue());
+	}
+
+	@Test
+	public void nfaMatcherWithDisjointRules() {
+		final List<String> names = Arrays.asList("GET", "POST");
+		final List<Automaton<Byte,String>> rules = new ArrayList<>();
+		rules.add(Regex.<String>parse("GET", StandardCharsets.ISO_8859_1));
+		rules.add(Regex.<String>parse("POST", StandardCharsets.ISO_8859_1));
+		final SingleSemanticsNfaByteMatcher<String> m =
+				ByteMatchers.singleSemanticsNfa(Automatons.unionAll(rules, names));
+		assertTrue(m.matches(ByteBuffer.wrap("GET /".getBytes(StandardCharsets.ISO_8859_1))));
+		assertEquals("GET", m.semanticValue());
+		assertTrue(m.matches(ByteBuffer.wrap("POST /".getBytes(StandardCharsets.ISO_8859_1))));
+		assertEquals("POST", m.semanticValue());
+	}
+
+	@Test
+	public void buildReportAndCounters() {
+		final Automaton<Byte,String> a = Regex.parse("(ab)+", StandardCharsets.ISO_8859_1);
+		a.addSemanticValue("FOO");
+		final SingleSemanticsByteMatcher<String> m = ByteMatchers.singleSemantics(a);
+		final BuildReport report = m.getBuildReport();
+		assertNotNull(report);
+		assertEquals(3, report.getDfaStates());
+		assertTrue(report.getNfaStates() >= report.getDfaStates());
+		final MatchCounters counters = new MatchCounters();
+		m.setCounters(counters);
+		final SingleSemanticsByteMatcher<String> copy = m.copy();
+		assertTrue(copy.matches(ByteBuffer.wrap("abx".getBytes(StandardCharsets.ISO_8859_1))));
+		assertFalse(copy.matches(ByteBuffer.wrap("x".getBytes(StandardCharsets.ISO_8859_1))));
+		assertEquals(2, counters.getCalls());
+		assertEquals(1, counters.getMatches());
+		/* Each call also examined the x that stopped it. */
+		assertEquals(4, counters.getBytesScanned());
+	}
+
+	@Test
+	public void renumber() {
+		final Automaton<Byte,String> a = Regex.parse("abc|xyz", StandardCharsets.ISO_8859_1);
+		a.addSemanticValue("FOO");
+		final SingleSemanticsByteMatcher<String> m = ByteMatchers.singleSemantics(a);
+		final StateProfile profile = m.newProfile();
+		profile.record(ByteBuffer.wrap("xyz".getBytes(StandardCharsets.ISO_8859_1)));
+		final MatchCounters counters = new MatchCounters();
+		m.setCounters(counters);
+		final SingleSemanticsByteMatcher<String> r = ByteMatchers.renumber(m, profile);
+		assertTrue(r.matches(ByteBuffer.wrap("xyz!".getBytes(StandardCharsets.ISO_8859_1))));
+		assertEquals(3, r.length());
+		assertEquals("FOO", r.semanticValue());
+		/* The renumbered matcher keeps counting. */
+		assertEquals(1, counters.getMatches());
+		m.setMatchMode(MatchMode.SHORTEST);
+		assertEquals(MatchMode.SHORTEST, ByteMatchers.renumber(m, null).getMatchMode());
+		final StateProfile hot = r.newProfile();
+		hot.record(ByteBuffer.wrap("xyz".getBytes(StandardCharsets.ISO_8859_1)));
+		for(int state = 0; state < 4; ++state) {
+			assertEquals(1, hot.visits(state));
+		}
+	}
+
+	@Test
+	public void unionAll() {
+		final List<Automaton<Byte,String>> left = new ArrayList<>();
+		final List<Automaton<Byte,String>> right = new ArrayList<>();
+		final List<String> leftValues = new ArrayList<>();
+		final List<String> rightValues = new ArrayList<>();
+		for(int i = 0; i < 2000; ++i) {
+			final String word = "w" + i + ";";
+			final List<Automaton<Byte,String>> members = i % 2 == 0 ? left : right;
+			members.add(Regex.<String>parse(word, StandardCharsets.ISO_8859_1));
+			(i % 2 == 0 ? leftValues : rightValues).add(word);
+		}
+		final List<Automaton<Byte,String>> halves = new ArrayList<>();
+		halves.add(Automatons.unionAll(left, leftValues));
+		halves.add(Automatons.unionAll(right, rightValues));
+		final Automaton<Byte,String> union = Automatons.unionAll(halves);
+		final SingleSemanticsByteMatcher<String> m = ByteMatchers.singleSemantics(union);
+		assertTrue(m.matches(ByteBuffer.wrap("w1999;".getBytes(StandardCharsets.ISO_8859_1))));
+		assertEquals("w1999;", m.semanticValue());
+		assertTrue(m.matches(ByteBuffer.wrap("w0;".getBytes(StandardCharsets.ISO_8859_1))));
+		assertEquals("w0;", m.semanticValue());
+	}
+
+	@Test
+	public void prioritySemantics() {
+		final List<Byte> letters = new ArrayList<>();
+		for(char c = 'a'; c <= 'z'; ++c) {
+			letters.add((byte) c);
+		}
+		final List<Automaton<Byte,String>> rules = new ArrayList<>();
+		rules.add(Regex.<String>parse("if", StandardCharsets.ISO_8859_1));
+		rules.add(Automatons.<Byte,String>set(letters).plus());
+		final List<String> names = Arrays.asList("IF", "IDENT");
+		final Automaton<Byte,String> lexer = Automatons.unionAll(rules, names);
+		final SingleSemanticsByteMatcher<String> m = ByteMatchers.singleSemantics(lexer, Priorities.byOrder(names));
+		assertTrue(m.matches(ByteBuffer.wrap("if ".getBytes(StandardCharsets.ISO_8859_1))));
+		assertEquals("IF", m.semanticValue());
+		assertTrue(m.matches(ByteBuffer.wrap("iffy ".getBytes(StandardCharsets.ISO_8859_1))));
+		assertEquals("IDENT", m.semanticValue());
+	}
+
+	@Test
+	public void acceleratedSelfLoops() {
+		final List<Byte> notQuote = new ArrayList<>();
+		final List<Byte> notNewline = new ArrayList<>();
+		for(int b = 0; b < 256; ++b) {
+			if(b != '"') {
+				notQuote.add((byte) b);
+			}
+			if(b != '\n') {
+				notNewline.add((byte) b);
+			}
+		}
+		final SingleSemanticsByteMatcher<String> quoted = ByteMatchers.singleSemantics(
+				Automatons.<Byte,String>symbol((byte) '"')
+						.concat(Automatons.<Byte,String>set(notQuote).star())
+						.concat(Automatons.<Byte,String>symbol((byte) '"')));
+		final SingleSemanticsByteMatcher<String> line = ByteMatchers.singleSemantics(
+				Automatons.<Byte,String>set(notNewline).star());
+		for(int length = 0; length < 40; ++length) {
+			final StringBuilder builder = new StringBuilder("\"");
+			for(int i = 0; i < length; ++i) {
+				builder.append((char) ('a' + i % 26));
+			}
+			final byte[] bytes = (builder + "\"x\ny").getBytes(StandardCharsets.ISO_8859_1);
+			for(final ByteOrder order : new ByteOrder[] { ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN }) {
+				final ByteBuffer buffer = ByteBuffer.wrap(bytes).order(order);
+				assertTrue(quoted.matches(buffer));
+				assertEquals(length + 2, quoted.length());
+				assertTrue(line.matches(buffer));
+				assertEquals(length + 3, line.length());
+			}
+		}
+	}
+
+	@Test
+	public void tally() throws IOException {
+		final List<Automaton<Byte,String>> rules = new ArrayList<>();
+		rules.add(Regex.<String>parse("GET", StandardCharsets.ISO_8859_1));
+		rules.add(Regex.<String>parse("POST", StandardCharsets.ISO_8859_1));
+		final SingleSemanticsByteMatcher<String> m = ByteMatchers.singleSemantics(
+				Automatons.unionAll(rules, Arrays.asList("GET", "POST")));
+		final StringBuilder builder = new StringBuilder();
+		for(int i = 0; i < 100; ++i) {
+			builder.append(i % 3 == 0 ? "POST " : "GET ");
+		}
+		final byte[] bytes = builder.toString().getBytes(StandardCharsets.ISO_8859_1);
+		final MatchTally whole = m.newTally();
+		m.tally(ByteBuffer.wrap(bytes), whole);
+		assertEquals(Long.valueOf(34), m.totals(whole).get("POST"));
+		assertEquals(Long.valueOf(66), m.totals(whole).get("GET"));
+		assertEquals(100, whole.unmatched());
+		/* Matches span reads of a small buffer, and tallies merge. */
+		final MatchTally partial = m.copy().newTally();
+		m.copy().tally(Channels.newChannel(new ByteArrayInputStream(bytes)), ByteBuffer.allocate(7), partial);
+		final MatchTally merged = m.newTally().merge(partial).merge(whole);
+		assertEquals(Long.valueOf(34), m.totals(partial).get("POST"));
+		assertEquals(Long.valueOf(132), m.totals(merged).get("GET"));
+	}
+
+	@Test
+	public void replace() throws IOException {
+		final List<Automaton<Byte,String>> rules = new ArrayList<>();
+		rules.add(Regex.<String>parse("(0|1|2|3|4|5|6|7|8|9)+", StandardCharsets.ISO_8859_1));
+		rules.add(Regex.<String>parse("secret", StandardCharsets.ISO_8859_1));
+		final SingleSemanticsByteMatcher<String> m = ByteMatchers.singleSemantics(
+				Automatons.unionAll(rules, Arrays.asList("NUMBER", "SECRET")));
+		final Map<String, byte[]> values = new HashMap<>();
+		values.put("SECRET", "******".getBytes(StandardCharsets.ISO_8859_1));
+		final ByteReplacer<String> redact = new ByteReplacer<>(m, ByteReplacer.forValues(values));
+		final ByteReplacer<String> bracket = new ByteReplacer<>(m, new ByteReplacer.Replacement<String>() {
+			@Override
+			public ByteBuffer replace(final String semanticValue, @Nonnull final ByteBuffer match) {
+				if(!"NUMBER".equals(semanticValue)) {
+					return null;
+				}
+				final ByteBuffer result = ByteBuffer.allocate(match.remaining() + 2);
+				return (ByteBuffer) result.put((byte) '<').put(match).put((byte) '>').flip();
+			}
+		});
+		final byte[] input = "pin 1234 is secret; so is secretary 56".getBytes(StandardCharsets.ISO_8859_1);
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		redact.replace(ByteBuffer.wrap(input), Channels.newChannel(out));
+		assertEquals("pin 1234 is ******; so is ******ary 56", out.toString("ISO-8859-1"));
+		/* Matches span reads of a small buffer. */
+		out.reset();
+		bracket.replace(Channels.newChannel(new ByteArrayInputStream(input)), Channels.newChannel(out),
+				ByteBuffer.allocate(5));
+		assertEquals("pin <1234> is secret; so is secretary <56>", out.toString("ISO-8859-1"));
+	}
+
+	@Test
+	public void hotSwap() throws Exception {
+		final MatcherHolder<String> holder = new MatcherHolder<>(ByteMatchers.singleSemantics(
+				Regex.<String>parse("GET", StandardCharsets.ISO_8859_1)));
+		final SingleSemanticsByteMatcher<String> old = holder.newMatcher();
+		final Executor direct = new Executor() {
+			@Override
+			public void execute(@Nonnull final Runnable command) {
+				command.run();
+			}
+		};
+		final MatcherHolder.Version<String> version = holder.update(new Callable<SingleSemanticsByteMatcher<String>>() {
+			@Override
+			public SingleSemanticsByteMatcher<String> call() {
+				return ByteMatchers.singleSemantics(Regex.<String>parse("POST", StandardCharsets.ISO_8859_1));
+			}
+		}, direct).get();
+		assertEquals(2, version.getNumber());
+		assertTrue(holder.current() == version);
+		final ByteBuffer post = ByteBuffer.wrap("POST".getBytes(StandardCharsets.ISO_8859_1));
+		assertTrue(holder.newMatcher().matches(post));
+		/* A matcher of the old version keeps the old tables. */
+		assertFalse(old.matches(post));
+		final Future<MatcherHolder.Version<String>> failed = holder.update(new Callable<SingleSemanticsByteMatcher<String>>() {
+			@Override
+			public SingleSemanticsByteMatcher<String> call() {
+				return ByteMatchers.singleSemantics(Regex.<String>parse("(", StandardCharsets.ISO_8859_1));
+			}
+		}, direct);
+		try {
+			failed.get();
+			fail();
+		}
+		catch(final ExecutionException expected) {
+			assertTrue(holder.current() == version);
+		}
+	}
+
+	@Test
+	public void overlappingUpdates() throws Exception {
+		final MatcherHolder<String> holder = new MatcherHolder<>(ByteMatchers.singleSemantics(
+				Regex.<String>parse("GET", StandardCharsets.ISO_8859_1)));
+		/* Runs the compilations in whatever order the test chooses. */
+		final List<Runnable> tasks = new ArrayList<>();
+		final Executor deferred = new Executor() {
+			@Override
+			public void execute(@Nonnull final Runnable command) {
+				tasks.add(command);
+			}
+		};
+		final Future<MatcherHolder.Version<String>> older = holder.update(new Callable<SingleSemanticsByteMatcher<String>>() {
+			@Override
+			public SingleSemanticsByteMatcher<String> call() {
+				return ByteMatchers.singleSemantics(Regex.<String>parse("PUT", StandardCharsets.ISO_8859_1));
+			}
+		}, deferred);
+		final Future<MatcherHolder.Version<String>> newer = holder.update(new Callable<SingleSemanticsByteMatcher<String>>() {
+			@Override
+			public SingleSemanticsByteMatcher<String> call() {
+				return ByteMatchers.singleSemantics(Regex.<String>parse("POST", StandardCharsets.ISO_8859_1));
+			}
+		}, deferred);
+		tasks.get(1).run();
+		tasks.get(0).run();
+		assertEquals(3, newer.get().getNumber());
+		/* The older update finished last but was dropped. */
+		assertTrue(older.get() == newer.get());
+		assertTrue(holder.current() == newer.get());
+		assertTrue(holder.newMatcher().matches(ByteBuffer.wrap("POST".getBytes(StandardCharsets.ISO_8859_1))));
+	}
+
+	@Test
+	public void partitioned() {
+		final List<String> patterns = Arrays.asList("GET", "GETS", "POST", "(a|b)*a(a|b)(a|b)", "(a|b|G)+");
+		final List<String> names = Arrays.asList("GET", "GETS", "POST", "THIRD_A", "AB");
+		final List<Automaton<Byte,String>> rules = new ArrayList<>();
+		final List<Automaton<Byte,String>> copies = new ArrayList<>();
+		for(final String pattern : patterns) {
+			rules.add(Regex.<String>parse(pattern, StandardCharsets.ISO_8859_1));
+			copies.add(Regex.<String>parse(pattern, StandardCharsets.ISO_8859_1));
+		}
+		final PartitionedByteMatcher<String> p = ByteMatchers.partitioned(rules, names, Priorities.byOrder(names), 8);
+		assertTrue(p.getGroups().size() > 1);
+		final SingleSemanticsByteMatcher<String> m = ByteMatchers.singleSemantics(
+				Automatons.unionAll(copies, names), Priorities.byOrder(names));
+		for(final String input : Arrays.asList("GET ", "GETS ", "POST ", "abbab ", "aab ", "G ", "Gab ", "x")) {
+			final ByteBuffer buffer = ByteBuffer.wrap(input.getBytes(StandardCharsets.ISO_8859_1));
+			assertEquals(input, m.matches(buffer), p.matches(buffer));
+			if(m.matches(buffer)) {
+				assertEquals(input, m.length(), p.length());
+				assertEquals(input, m.semanticValue(), p.semanticValue());
+			}
+		}
+	}
+
+	@Test
+	public void batch() throws InterruptedException {
+		final List<String> names = Arrays.asList("GET", "POST");
+		final List<Automaton<Byte,String>> rules = new ArrayList<>();
+		rules.add(Regex.<String>parse("GET", StandardCharsets.ISO_8859_1));
+		rules.add(Regex.<String>parse("POST", StandardCharsets.ISO_8859_1));
+		final SingleSemanticsByteMatcher<String> m = ByteMatchers.singleSemantics(Automatons.unionAll(rules, names));
+		final BatchMatcher<String> batch = new BatchMatcher<>(m);
+		final String[] messages = {"GET /", "POST /", "PUT /", "", "GE", "POSTED"};
+		final ByteArrayOutputStream data = new ByteArrayOutputStream();
+		final ByteBuffer[] buffers = new ByteBuffer[messages.length];
+		final int[] offsets = new int[messages.length + 1];
+		for(int i = 0; i < messages.length; ++i) {
+			final byte[] bytes = messages[i].getBytes(StandardCharsets.ISO_8859_1);
+			buffers[i] = ByteBuffer.wrap(bytes);
+			data.write(bytes, 0, bytes.length);
+			offsets[i + 1] = data.size();
+		}
+		final int[] expectedLengths = {3, 4, -1, -1, -1, 4};
+		final int[] lengths = new int[messages.length];
+		final int[] ids = new int[messages.length];
+		batch.match(buffers, lengths, ids);
+		assertArrayEquals(expectedLengths, lengths);
+		assertEquals("POST", batch.getSemanticValues().get(ids[5]));
+		assertEquals(BatchMatcher.NO_SEMANTIC_VALUE, ids[2]);
+		final ExecutorService pool = Executors.newFixedThreadPool(3);
+		try {
+			final int[] poolLengths = new int[messages.length];
+			final int[] poolIds = new int[messages.length];
+			batch.match(data.toByteArray(), offsets, poolLengths, poolIds, pool, 4);
+			assertArrayEquals(expectedLengths, poolLengths);
+			assertArrayEquals(ids, poolIds);
+		}
+		finally {
+			pool.shutdown();
+		}
+		final BatchMatcher<String> single = new BatchMatcher<>(m, 1);
+		for(final int[] bad : new int[][] { {0, data.size() + 1}, {-1, 0} }) {
+			try {
+				single.match(data.toByteArray(), bad, lengths, ids);
+				fail();
+			}
+			catch(IndexOutOfBoundsException expected) {
+				/* Offsets must lie within the data. */
+			}
+		}
+	}
+
+	@Test
+	public void interleavedBatch() {
+		final String[] messages = {"ab", "abcd", "abc", "", "x", "abcde", "abab", "a"};
+		final ByteBuffer[] buffers = new ByteBuffer[messages.length];
+		for(int i = 0; i < messages.length; ++i) {
+			buffers[i] = ByteBuffer.wrap(messages[i].getBytes(StandardCharsets.ISO_8859_1));
+		}
+		for(final MatchMode mode : MatchMode.values()) {
+			final SingleSemanticsByteMatcher<String> m = ByteMatchers.singleSemantics(
+					Regex.<String>parse("ab|abcd|(ab)*", StandardCharsets.ISO_8859_1));
+			m.setMatchMode(mode);
+			final int[] lengths = new int[messages.length];
+			final int[] ids = new int[messages.length];
+			final int[] interleavedLengths = new int[messages.length];
+			final int[] interleavedIds = new int[messages.length];
+			new BatchMatcher<>(m, 1).match(buffers, lengths, ids);
+			new BatchMatcher<>(m, 3).match(buffers, interleavedLengths, interleavedIds);
+			assertArrayEquals(mode.toString(), lengths, interleavedLengths);
+			assertArrayEquals(mode.toString(), ids, interleavedIds);
+		}
+	}
+
+	@Test
+	public void incrementalScan() {
+		final List<String> names = Arrays.asList("IF", "ID", "SPACE", "COMMENT");
+		final List<Automaton<Byte,String>> rules = new ArrayList<>();
+		rules.add(Regex.<String>parse("if", StandardCharsets.ISO_8859_1));
+		rules.add(Regex.<String>parse("(i|f|x)+", StandardCharsets.ISO_8859_1));
+		rules.add(Regex.<String>parse(" +", StandardCharsets.ISO_8859_1));
+		rules.add(Regex.<String>parse("<(x| |i|f)*>", StandardCharsets.ISO_8859_1));
+		final SingleSemanticsByteMatcher<String> m = ByteMatchers.singleSemantics(
+				Automatons.unionAll(rules, names), Priorities.byOrder(names));
+		final IncrementalScanner<String> incremental = new IncrementalScanner<>(m);
+		final IncrementalScanner<String> full = new IncrementalScanner<>(m);
+		final String alphabet = "if x<>;";
+		final Random random = new Random(7);
+		final StringBuilder document = new StringBuilder();
+		for(int i = 0; i < 200; ++i) {
+			document.append(alphabet.charAt(random.nextInt(alphabet.length())));
+		}
+		incremental.scan(buffer(document));
+		for(int edit = 0; edit < 500; ++edit) {
+			final int offset = random.nextInt(document.length() + 1);
+			final int removed = Math.min(random.nextInt(4), document.length() - offset);
+			final StringBuilder inserted = new StringBuilder();
+			for(int i = random.nextInt(4); i > 0; --i) {
+				inserted.append(alphabet.charAt(random.nextInt(alphabet.length())));
+			}
+			document.replace(offset, offset + removed, inserted.toString());
+			incremental.edit(buffer(document), offset, removed, inserted.length());
+			full.scan(buffer(document));
+			assertEquals(full.tokenCount(), incremental.tokenCount());
+			for(int i = 0; i < full.tokenCount(); ++i) {
+				assertEquals(full.start(i), incremental.start(i));
+				assertEquals(full.length(i), incremental.length(i));
+				assertEquals(full.semanticValue(i), incremental.semanticValue(i));
+			}
+		}
+		/* A small edit far from an open comment rescans a few tokens. */
+		final StringBuilder big = new StringBuilder();
+		for(int i = 0; i < 10000; ++i) {
+			big.append("xi if ");
+		}
+		incremental.scan(buffer(big));
+		big.replace(30000, 30002, "fff");
+		assertTrue(incremental.edit(buffer(big), 30000, 2, 3) <= 3);
+		assertEquals(30000, incremental.start(20000));
+		assertEquals("ID", incremental.semanticValue(20000));
+		assertEquals(3, incremental.length(20000));
+		/* An open comment looks ahead to the end, but once it is closed
+		 * the scanner no longer has to look back that far. */
+		big.insert(0, '<');
+		assertEquals(1, incremental.edit(buffer(big), 0, 0, 1));
+		big.insert(1, '>');
+		incremental.edit(buffer(big), 1, 0, 1);
+		assertEquals("COMMENT", incremental.semanticValue(0));
+		big.delete(0, 2);
+		incremental.edit(buffer(big), 0, 2, 0);
+		big.replace(30000, 30003, "ii");
+		assertTrue(incremental.edit(buffer(big), 30000, 3, 2) <= 3);
+		assertEquals("ID", incremental.semanticValue(20000));
+		assertEquals(2, incremental.length(20000));
+	}
+
+	@Test
+	public void incrementalScanAtEnd() {
+		final Automaton<Byte,String> a = Regex.parse("a+", StandardCharsets.ISO_8859_1);
+		a.addSemanticValue("R1");
+		final SingleSemanticsByteMatcher<String> m = ByteMatchers.singleSemantics(a);
+		final IncrementalScanner<String> incremental = new IncrementalScanner<>(m);
+		/* A token scanned through the end is rescanned at the same distance
+		 * from the end, and must still be rescanned by the next edit. */
+		incremental.scan(buffer("a"));
+		incremental.edit(buffer("a"), 1, 0, 0);
+		incremental.edit(buffer("c"), 0, 1, 1);
+		assertEquals(1, incremental.tokenCount());
+		assertNull(incremental.semanticValue(0));
+		incremental.edit(buffer("a"), 0, 1, 1);
+		incremental.edit(buffer("a"), 1, 0, 0);
+		incremental.edit(buffer(""), 0, 1, 0);
+		assertEquals(0, incremental.tokenCount());
+		/* Short documents with most edits at the end. */
+		final IncrementalScanner<String> full = new IncrementalScanner<>(m);
+		final String alphabet = "ac";
+		final Random random = new Random(11);
+		final StringBuilder document = new StringBuilder();
+		incremental.scan(buffer(document));
+		for(int edit = 0; edit < 2000; ++edit) {
+			final int offset = random.nextBoolean() ? document.length() : random.nextInt(document.length() + 1);
+			final int removed = Math.min(random.nextInt(3), document.length() - offset);
+			final StringBuilder inserted = new StringBuilder();
+			for(int i = random.nextInt(3); i > 0 && document.length() < 30; --i) {
+				inserted.append(alphabet.charAt(random.nextInt(alphabet.length())));
+			}
+			document.replace(offset, offset + removed, inserted.toString());
+			incremental.edit(buffer(document), offset, removed, inserted.length());
+			full.scan(buffer(document));
+			assertEquals(full.tokenCount(), incremental.tokenCount());
+			for(int i = 0; i < full.tokenCount(); ++i) {
+				assertEquals(full.start(i), incremental.start(i));
+				assertEquals(full.length(i), incremental.length(i));
+				assertEquals(full.semanticValue(i), incremental.semanticValue(i));
+			}
+		}
+	}
+
+	private static ByteBuffer buffer(final CharSequence document) {
+		return ByteBuffer.wrap(document.toString().getBytes(StandardCharsets.ISO_8859_1));
+	}
+
+	@Test
+	public void levenshtein() {
+		final String word = "abca";
+		final SingleSemanticsByteMatcher<Void> m = ByteMatchers.singleSemantics(
+				Automatons.<Void>levenshtein(buffer(word), 2));
+		m.setMatchMode(MatchMode.FULL);
+		/* Every string of up to six symbols, including one not in the word. */
+		final List<String> strings = new ArrayList<>();
+		strings.add("");
+		for(int i = 0; i < strings.size() && strings.get(i).length() < 6; ++i) {
+			for(final char c : "abcx".toCharArray()) {
+				strings.add(strings.get(i) + c);
+			}
+		}
+		for(final String string : strings) {
+			assertEquals(string, editDistance(word, string) <= 2, m.matches(buffer(string)));
+		}
+		/* Intersected with a dictionary, it finds the words near the word. */
+		final DictionaryBuilder<String> dictionary = new DictionaryBuilder<>();
+		for(final String entry : Arrays.asList("cat", "cart", "coat", "dog", "scatter", "at")) {
+			dictionary.add(entry.getBytes(StandardCharsets.ISO_8859_1), entry);
+		}
+		final Automaton<Byte,String> near = dictionary.toAutomaton().intersect(
+				Automatons.<String>levenshtein(buffer("cat"), 1), SemanticCombination.LEFT);
+		final SingleSemanticsByteMatcher<String> n = ByteMatchers.singleSemantics(near);
+		n.setMatchMode(MatchMode.FULL);
+		for(final String entry : Arrays.asList("cat", "cart", "coat", "dog", "scatter", "at")) {
+			assertEquals(entry, editDistance("cat", entry) <= 1, n.matches(buffer(entry)));
+		}
+	}
+
+	private static int editDistance(final String a, final String b) {
+		int[] previous = new int[b.length() + 1];
+		int[] current = new int[b.length() + 1];
+		for(int j = 0; j <= b.length(); ++j) {
+			previous[j] = j;
+		}
+		for(int i = 1; i <= a.length(); ++i) {
+			current[0] = i;
+			for(int j = 1; j <= b.length(); ++j) {
+				final int substitution = previous[j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1);
+				current[j] = Math.min(substitution, Math.min(previous[j], current[j - 1]) + 1);
+			}
+			final int[] swap = previous;
+			previous = current;
+			current = swap;
+		}
+		return previous[b.length()];
+	}
+
+	@Test
+	public void matchModes() {
+		final SingleSemanticsByteMatcher<String> m = ByteMatchers.singleSemantics(
+				Regex.<String>parse("ab|abcd", StandardCharsets.ISO_8859_1));
+		final ByteBuffer abcd = ByteBuffer.wrap("abcd".getBytes(StandardCharsets.ISO_8859_1));
+		final ByteBuffer abc = ByteBuffer.wrap("abc".getBytes(StandardCharsets.ISO_8859_1));
+		assertTrue(m.matches(abcd));
+		assertEquals(4, m.length());
+		m.setMatchMode(MatchMode.SHORTEST);
+		assertTrue(m.matches(abc));
+		assertEquals(2, m.length());
+		m.setMatchMode(MatchMode.FULL);
+		assertTrue(m.matches(abcd));
+		assertFalse(m.matches(abc));
+		assertFalse(m.matches(ByteBuffer.wrap("abcde".getBytes(StandardCharsets.ISO_8859_1))));
+	}
+
+	@Test
+	public void deadStateStopsScan() {
+		/* The complement of every string is a state that loops on every
+		 * byte and never accepts. */
+		final SingleSemanticsByteMatcher<String> m = ByteMatchers.singleSemantics(
+				Automatons.<Byte,String>set(Automatons.bytes()).star().complement(Automatons.bytes()));
+		final MatchCounters counters = new MatchCounters();
+		m.setCounters(counters);
+		assertFalse(m.matches(ByteBuffer.wrap("abc".getBytes(StandardCharsets.ISO_8859_1))));
+		assertEquals(0, counters.getBytesScanned());
+	}
+
+}
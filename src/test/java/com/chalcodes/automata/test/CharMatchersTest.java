@@ -0,0 +1,51 @@
+package com.chalcodes.automata.test;
+
+import com.chalcodes.automata.Automaton;
+import com.chalcodes.automata.Automatons;
+import com.chalcodes.automata.CharMatchers;
+import com.chalcodes.automata.SingleSemanticsCharMatcher;
+import com.chalcodes.automata.regex.Regex;
+import org.junit.Test;
+
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CharMatchersTest {
+
+	@Test
+	public void matcher() {
+		final Automaton<Character,String> a = Regex.parse("café|(😀)+");
+		a.addSemanticValue("FOO");
+		final SingleSemanticsCharMatcher<String> m = CharMatchers.singleSemantics(a);
+		assertTrue(m.matches("a café!", 2));
+		assertEquals(4, m.length());
+		assertEquals("FOO", m.semanticValue());
+		assertTrue(m.matches(CharBuffer.wrap("😀😀\ud83d"), 0));
+		assertEquals(4, m.length());
+		assertFalse(m.matches("cafe", 0));
+	}
+
+	@Test
+	public void manyClasses() {
+		/* Every code unit in the range leads to its own state. */
+		final List<Automaton<Character,String>> members = new ArrayList<>();
+		for(char c = 0x100; c < 0x1100; ++c) {
+			members.add(Automatons.<Character,String>sequence(Arrays.asList(c, c)));
+		}
+		final Automaton<Character,String> a = Automatons.unionAll(members);
+		a.addSemanticValue("FOO");
+		final SingleSemanticsCharMatcher<String> m = CharMatchers.singleSemantics(a);
+		assertTrue(m.matches("\u0123\u0123", 0));
+		assertEquals(2, m.length());
+		assertTrue(m.matches("\u10ff\u10ff", 0));
+		assertFalse(m.matches("\u0123\u0124", 0));
+		assertFalse(m.matches("\u1100\u1100", 0));
+	}
+
+}
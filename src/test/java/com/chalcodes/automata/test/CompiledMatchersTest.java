@@ -0,0 +1,135 @@
+package com.chalcodes.automata.test;
+
+import com.chalcodes.automata.CompiledMatchers;
+import com.chalcodes.automata.SingleSemanticsByteMatcher;
+import com.chalcodes.automata.regex.PatternFiles;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CompiledMatchersTest {
+
+	private static ByteBuffer bytes(final String s) {
+		return ByteBuffer.wrap(s.getBytes(StandardCharsets.ISO_8859_1));
+	}
+
+	@Test
+	public void roundTrip() throws IOException {
+		final String patterns = "# methods\n" +
+				"GET = GET\n" +
+				"\n" +
+				"WORD = (G|E|T|P|O|S)+\n";
+		final SingleSemanticsByteMatcher<String> compiled =
+				PatternFiles.compile(new StringReader(patterns), StandardCharsets.ISO_8859_1);
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		CompiledMatchers.write(compiled, out);
+		final SingleSemanticsByteMatcher<String> m =
+				CompiledMatchers.read(new ByteArrayInputStream(out.toByteArray()));
+		assertTrue(m.matches(bytes("GET /")));
+		assertEquals("GET", m.semanticValue());
+		assertTrue(m.matches(bytes("POST /")));
+		assertEquals(4, m.length());
+		assertEquals("WORD", m.semanticValue());
+		assertFalse(m.matches(bytes("/")));
+	}
+
+	@Test
+	public void compileDirectory() throws IOException {
+		final File root = File.createTempFile("automata", "");
+		assertTrue(root.delete());
+		try {
+			final File source = new File(root, "src");
+			final File output = new File(root, "classes");
+			final File patterns = new File(source, "http/methods.patterns");
+			assertTrue(patterns.getParentFile().mkdirs());
+			try(final OutputStream out = new FileOutputStream(patterns)) {
+				out.write("GET = GET\nPOST = POST\n".getBytes(StandardCharsets.UTF_8));
+			}
+			assertTrue(patterns.setLastModified(System.currentTimeMillis() - 10000));
+			assertEquals(1, PatternFiles.compileAll(source, output, StandardCharsets.UTF_8, StandardCharsets.UTF_8));
+			/* The table is up to date now. */
+			assertEquals(0, PatternFiles.compileAll(source, output, StandardCharsets.UTF_8, StandardCharsets.UTF_8));
+			try(final URLClassLoader loader = new URLClassLoader(new URL[] { output.toURI().toURL() }, null)) {
+				final SingleSemanticsByteMatcher<String> m = CompiledMatchers.load(loader, "http/methods.dfa");
+				assertTrue(m.matches(bytes("POST /")));
+				assertEquals("POST", m.semanticValue());
+			}
+		}
+		finally {
+			delete(root);
+		}
+	}
+
+	private static void delete(final File file) {
+		final File[] children = file.listFiles();
+		if(children != null) {
+			for(final File child : children) {
+				delete(child);
+			}
+		}
+		assertTrue(file.delete());
+	}
+
+	@Test(expected = IOException.class)
+	public void badMagic() throws IOException {
+		CompiledMatchers.read(new ByteArrayInputStream(new byte[8]));
+	}
+
+	@Test
+	public void badStateCount() throws IOException {
+		for(final int states : new int[] { 0, -1, Integer.MAX_VALUE }) {
+			final ByteArrayOutputStream out = new ByteArrayOutputStream();
+			final DataOutputStream data = new DataOutputStream(out);
+			data.writeInt(0x41555441);
+			data.writeShort(1);
+			data.writeBoolean(false);
+			data.writeInt(states);
+			try {
+				CompiledMatchers.read(new ByteArrayInputStream(out.toByteArray()));
+				fail();
+			}
+			catch(final IOException expected) {
+				assertEquals("bad state count", expected.getMessage());
+			}
+		}
+	}
+
+	@Test
+	public void badTransitionCount() throws IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		final DataOutputStream data = new DataOutputStream(out);
+		data.writeInt(0x41555441);
+		data.writeShort(1);
+		data.writeBoolean(false);
+		data.writeInt(1);
+		data.writeShort(257);
+		try {
+			CompiledMatchers.read(new ByteArrayInputStream(out.toByteArray()));
+			fail();
+		}
+		catch(final IOException expected) {
+			assertEquals("bad transition count", expected.getMessage());
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void badLine() throws IOException {
+		PatternFiles.compile(new StringReader("no rule here\n"), StandardCharsets.ISO_8859_1);
+	}
+}
@@ -0,0 +1,90 @@
+package com.chalcodes.automata.test;
+
+import com.chalcodes.automata.ByteMatchers;
+import com.chalcodes.automata.DictionaryBuilder;
+import com.chalcodes.automata.SingleSemanticsByteMatcher;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class DictionaryBuilderTest {
+
+	private static ByteBuffer bytes(final String s) {
+		return ByteBuffer.wrap(s.getBytes(StandardCharsets.ISO_8859_1));
+	}
+
+	@Test
+	public void unsortedInsertionIsMinimal() {
+		final String[] words = { "tap", "taps", "top", "tops", "stop", "stops" };
+		final DictionaryBuilder<String> sorted = new DictionaryBuilder<>();
+		final DictionaryBuilder<String> unsorted = new DictionaryBuilder<>();
+		for(final String word : new String[] { "stop", "stops", "tap", "taps", "top", "tops" }) {
+			sorted.add(bytes(word), "W");
+		}
+		for(final String word : words) {
+			unsorted.add(bytes(word), "W");
+		}
+		assertEquals(6, unsorted.size());
+		assertEquals(sorted.stateCount(), unsorted.stateCount());
+		/* root, s, st, t, {sto, ta, to}, {stop, tap, top}, final */
+		assertEquals(7, unsorted.stateCount());
+		assertEquals("W", unsorted.get(bytes("tops")));
+		assertNull(unsorted.get(bytes("tos")));
+	}
+
+	@Test
+	public void matcher() {
+		final DictionaryBuilder<String> dictionary = new DictionaryBuilder<>();
+		dictionary.add(bytes("GET"), "GET").add(bytes("POST"), "POST");
+		final SingleSemanticsByteMatcher<String> m = ByteMatchers.singleSemantics(dictionary);
+		assertTrue(m.matches(bytes("POST /")));
+		assertEquals(4, m.length());
+		assertEquals("POST", m.semanticValue());
+		dictionary.add(bytes("PUT"), "PUT");
+		assertTrue(ByteMatchers.singleSemantics(dictionary).matches(bytes("PUT /")));
+	}
+
+	@Test
+	public void sparseTableIsPacked() {
+		final DictionaryBuilder<Integer> dictionary = new DictionaryBuilder<>();
+		for(int i = 0; i < 2000; ++i) {
+			dictionary.add(bytes("key" + i * 7919), i);
+		}
+		final SingleSemanticsByteMatcher<Integer> m = ByteMatchers.singleSemantics(dictionary);
+		final long dense = (16 + 4L * 256) * dictionary.stateCount();
+		assertTrue(m.getBuildReport().getTableBytes() < dense / 4);
+		for(int i = 0; i < 2000; ++i) {
+			assertTrue(m.matches(bytes("key" + i * 7919 + " ")));
+			assertEquals(Integer.valueOf(i), m.semanticValue());
+		}
+		assertFalse(m.matches(bytes("kez")));
+	}
+
+	@Test(timeout = 30000)
+	public void largeTableBuilds() {
+		/* Random words give a table of about a million states, nearly all
+		 * with a single transition. */
+		final Random random = new Random(1);
+		final DictionaryBuilder<Integer> dictionary = new DictionaryBuilder<>();
+		final byte[][] words = new byte[100000][12];
+		for(int i = 0; i < words.length; ++i) {
+			random.nextBytes(words[i]);
+			dictionary.add(ByteBuffer.wrap(words[i]), i);
+		}
+		final SingleSemanticsByteMatcher<Integer> m = ByteMatchers.singleSemantics(dictionary);
+		for(int i = 0; i < words.length; i += 997) {
+			final ByteBuffer buffer = ByteBuffer.allocate(13);
+			buffer.put(words[i]).put((byte) 0).flip();
+			assertTrue(m.matches(buffer));
+			assertEquals(Integer.valueOf(i), m.semanticValue());
+		}
+	}
+
+}
@@ -0,0 +1,52 @@
+package com.chalcodes.automata.test;
+
+import com.chalcodes.automata.BatchMatcher;
+import com.chalcodes.automata.ByteMatchers;
+import com.chalcodes.automata.DictionaryBuilder;
+import com.chalcodes.automata.SingleSemanticsByteMatcher;
+
+import java.util.Random;
+
+/**
+ * Measures the throughput of batch matching with different numbers of
+ * interleaved lanes.  The matcher is built from random words, so its table
+ * is far larger than the cache and nearly every step misses it.  Not run by
+ * the test suite.
+ * <p>
+ * Arguments are the number of words and the length of each word.
+ */
+public class InterleavedBenchmark {
+	private static final int ROUNDS = 5;
+
+	public static void main(final String[] args) throws Exception {
+		final int words = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+		final int length = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+		final Random random = new Random(1);
+		final DictionaryBuilder<Integer> dictionary = new DictionaryBuilder<>();
+		final byte[] data = new byte[words * length];
+		random.nextBytes(data);
+		final int[] offsets = new int[words + 1];
+		for(int i = 0; i < words; ++i) {
+			final byte[] word = new byte[length];
+			System.arraycopy(data, i * length, word, 0, length);
+			dictionary.add(word, i & 0xFF);
+			offsets[i + 1] = (i + 1) * length;
+		}
+		final SingleSemanticsByteMatcher<Integer> matcher = ByteMatchers.singleSemantics(dictionary);
+		System.out.println(matcher.getBuildReport());
+		final int[] lengths = new int[words];
+		final int[] ids = new int[words];
+		for(final int lanes : new int[] {1, 2, 4, 8}) {
+			final BatchMatcher<Integer> batch = new BatchMatcher<>(matcher, lanes);
+			/* Warm up. */
+			batch.match(data, offsets, lengths, ids);
+			long best = Long.MAX_VALUE;
+			for(int round = 0; round < ROUNDS; ++round) {
+				final long start = System.nanoTime();
+				batch.match(data, offsets, lengths, ids);
+				best = Math.min(best, System.nanoTime() - start);
+			}
+			System.out.printf("%d lanes: %.1f MB/s%n", lanes, data.length * 1e3 / best);
+		}
+	}
+}
@@ -1,13 +1,21 @@
 package com.chalcodes.automata.test;
 
 import com.chalcodes.automata.Automaton;
+import com.chalcodes.automata.ByteMatchers;
+import com.chalcodes.automata.CapturingByteMatcher;
+import com.chalcodes.automata.SingleSemanticsByteMatcher;
 import com.chalcodes.automata.TransitionLabeler;
 import com.chalcodes.automata.regex.Regex;
 import org.junit.Test;
 
 import javax.annotation.Nonnull;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
 public class RegexTest {
 	private static final TransitionLabeler<Byte> gLabeler = new TransitionLabeler<Byte>() {
 		@Override
@@ -32,4 +40,44 @@ public class RegexTest {
 		a.determinize();
 		System.out.println(a.toGraphViz("test", gLabeler));
 	}
-}
\ No newline at end of file
+
+	@Test
+	public void captureGroups() {
+		final CapturingByteMatcher<Void> m = ByteMatchers.capturing(
+				Regex.<Void>parse("(a+)=(?:(b)|c)*;", StandardCharsets.ISO_8859_1));
+		assertEquals(2, m.groupCount());
+		assertTrue(m.matches(ByteBuffer.wrap("aa=bcbc;".getBytes(StandardCharsets.ISO_8859_1))));
+		assertEquals(8, m.end(0));
+		assertEquals(0, m.start(1));
+		assertEquals(2, m.end(1));
+		/* The last repetition of the group is reported. */
+		assertEquals(5, m.start(2));
+		assertEquals(6, m.end(2));
+		assertTrue(m.matches(ByteBuffer.wrap("a=c;".getBytes(StandardCharsets.ISO_8859_1))));
+		assertEquals(-1, m.start(2));
+		assertEquals(-1, m.end(2));
+	}
+
+	@Test
+	public void caseInsensitive() {
+		final SingleSemanticsByteMatcher<Void> sensitive = ByteMatchers.singleSemantics(
+				Regex.<Void>parse("select", StandardCharsets.UTF_8));
+		final SingleSemanticsByteMatcher<Void> ascii = ByteMatchers.singleSemantics(
+				Regex.<Void>parse("select caf\u00e9", StandardCharsets.UTF_8, Regex.CASE_INSENSITIVE));
+		final SingleSemanticsByteMatcher<Void> unicode = ByteMatchers.singleSemantics(
+				Regex.<Void>parse("caf\u00e9", StandardCharsets.UTF_8, Regex.CASE_INSENSITIVE | Regex.UNICODE_CASE));
+		assertTrue(ascii.matches(utf8("SeLeCt CAF\u00e9")));
+		assertFalse(ascii.matches(utf8("SeLeCt CAF\u00c9")));
+		assertTrue(unicode.matches(utf8("CAF\u00c9")));
+		assertEquals(5, unicode.length());
+		/* Folding does not add states. */
+		final SingleSemanticsByteMatcher<Void> folded = ByteMatchers.singleSemantics(
+				Regex.<Void>parse("select", StandardCharsets.UTF_8, Regex.CASE_INSENSITIVE));
+		assertEquals(sensitive.getBuildReport().getDfaStates(), folded.getBuildReport().getDfaStates());
+		assertEquals(sensitive.getBuildReport().getNfaStates(), folded.getBuildReport().getNfaStates());
+	}
+
+	private static ByteBuffer utf8(final String s) {
+		return ByteBuffer.wrap(s.getBytes(StandardCharsets.UTF_8));
+	}
+}
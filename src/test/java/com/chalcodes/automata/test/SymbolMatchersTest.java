@@ -0,0 +1,50 @@
+package com.chalcodes.automata.test;
+
+import com.chalcodes.automata.Automaton;
+import com.chalcodes.automata.Automatons;
+import com.chalcodes.automata.SingleSemanticsSymbolMatcher;
+import com.chalcodes.automata.SymbolMatchers;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SymbolMatchersTest {
+
+	private enum Event { OPEN, READ, WRITE, CLOSE }
+
+	@Test
+	public void enumSymbols() {
+		final Automaton<Event,String> a = Automatons.symbol(Event.OPEN);
+		a.concat(Automatons.<Event,String>set(Arrays.asList(Event.READ, Event.WRITE)).star());
+		a.concat(Automatons.<Event,String>symbol(Event.CLOSE));
+		a.addSemanticValue("SESSION");
+		final SingleSemanticsSymbolMatcher<Event,String> m = SymbolMatchers.singleSemantics(a);
+		final List<Event> events = Arrays.asList(Event.OPEN, Event.READ, Event.WRITE, Event.CLOSE, Event.OPEN);
+		assertTrue(m.matches(events, 0));
+		assertEquals(4, m.length());
+		assertEquals("SESSION", m.semanticValue());
+		assertFalse(m.matches(events, 1));
+		final int[] ids = new int[events.size()];
+		for(int i = 0; i < ids.length; ++i) {
+			ids[i] = m.symbolId(events.get(i));
+		}
+		assertTrue(m.matches(ids, 0, ids.length));
+		assertEquals(4, m.length());
+	}
+
+	@Test
+	public void stringSymbols() {
+		final Automaton<String,String> a = Automatons.sequence(Arrays.asList("SELECT", "*", "FROM"));
+		a.addSemanticValue("QUERY");
+		final SingleSemanticsSymbolMatcher<String,String> m = SymbolMatchers.singleSemantics(a);
+		assertTrue(m.matches(Arrays.asList("SELECT", "*", "FROM", "t").iterator()));
+		assertEquals(3, m.length());
+		assertEquals(-1, m.symbolId("WHERE"));
+	}
+
+}